@@ -0,0 +1,70 @@
+package benchmarks;
+
+import lexers.CharReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Measures the character-level operations of CharReader over a whole input, the score is in characters per second
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CharReaderBenchmark {
+    private final static int SIZE = 1 << 20;
+    @Param({Corpus.MIXED, Corpus.SPACES})
+    private String mix;
+    private String input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = Corpus.generate(mix, SIZE, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int peekRead() throws IOException {
+        CharReader charReader = new CharReader(new StringReader(input));
+        int sum = 0, c;
+        while (!charReader.isEos(c = charReader.peek())) {
+            sum += c;
+            charReader.read();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int skipSpaces() throws IOException {
+        CharReader charReader = new CharReader(new StringReader(input));
+        int count = 0;
+        charReader.skipSpaces();
+        while (!charReader.isEos(charReader.peek())) {
+            charReader.read();
+            charReader.skipSpaces();
+            ++count;
+        }
+        return count;
+    }
+
+    // Reads ahead of a mark and backs off, as OpLexer does after a longest match, moving on one character at a time
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int markReset() throws IOException {
+        CharReader charReader = new CharReader(new StringReader(input));
+        int sum = 0;
+        long start;
+        while (!charReader.isEos(charReader.peek())) {
+            start = charReader.mark();
+            sum += charReader.read();
+            sum += charReader.read();
+            sum += charReader.read();
+            charReader.reset(start + 1);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,121 @@
+package benchmarks;
+
+import exceptions.SyntaxError;
+import lexers.CharReader;
+import lexers.NumLexer;
+import lexers.OpLexer;
+import lexers.WordLexer;
+import org.openjdk.jmh.annotations.*;
+import symbols.SymbolPool;
+import tokens.Token;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Measures each component lexer on an input made only of the tokens it reads, one token per operation, so the score
+// is in tokens per second and the GC profiler's gc.alloc.rate.norm is the number of bytes allocated per token
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComponentLexerBenchmark {
+    private final static int SIZE = 1 << 20;
+
+    // A reader over an input that starts over once it has been read
+    public abstract static class Input {
+        private String input;
+        protected CharReader charReader;
+
+        protected void setup(String mix) {
+            input = Corpus.generate(mix, SIZE, 42);
+            restart();
+        }
+
+        /**
+         * Skips to the next token, starting over from the beginning of the input at its end.
+         *
+         * @throws IOException if the read operation causes an IO error.
+         */
+        protected void next() throws IOException {
+            charReader.skipSpaces();
+            if (charReader.isEos(charReader.peek())) {
+                restart();
+                charReader.skipSpaces();
+            }
+        }
+
+        protected abstract void restart();
+
+        protected CharReader newCharReader() {
+            return new CharReader(new StringReader(input));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NumInput extends Input {
+        private NumLexer numLexer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            setup(Corpus.NUMBERS);
+        }
+
+        @Override
+        protected void restart() {
+            charReader = newCharReader();
+            numLexer = new NumLexer(charReader);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OpInput extends Input {
+        private OpLexer opLexer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            setup(Corpus.OPS);
+        }
+
+        @Override
+        protected void restart() {
+            charReader = newCharReader();
+            opLexer = new OpLexer(charReader);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WordInput extends Input {
+        private WordLexer wordLexer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            setup(Corpus.WORDS);
+        }
+
+        @Override
+        protected void restart() {
+            charReader = newCharReader();
+            wordLexer = new WordLexer(charReader, new SymbolPool());
+        }
+    }
+
+    @Benchmark
+    public Token numLexer(NumInput input) throws SyntaxError, IOException {
+        input.next();
+        return input.numLexer.read();
+    }
+
+    @Benchmark
+    public Token opLexer(OpInput input) throws IOException {
+        input.next();
+        return input.opLexer.read();
+    }
+
+    @Benchmark
+    public Token wordLexer(WordInput input) throws SyntaxError, IOException {
+        input.next();
+        return input.wordLexer.read();
+    }
+}
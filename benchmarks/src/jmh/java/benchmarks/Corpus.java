@@ -0,0 +1,98 @@
+package benchmarks;
+
+import operators.OpTable;
+
+import java.util.Random;
+
+// Generates synthetic sources of a given size and token mix for the benchmarks, the same seed gives the same source
+public class Corpus {
+    // Mixes of tokens a corpus can be made of
+    public final static String MIXED = "mixed";
+    public final static String NUMBERS = "numbers";
+    public final static String WORDS = "words";
+    public final static String OPS = "ops";
+    public final static String SPACES = "spaces";
+    private final static String[] NUMBER_FORMS = {"7", "42", "3.14", ".5", "12.", "1e9", "2.5e-3", ".5e+7", "100000"};
+    private final static String[] WORD_FORMS = {"var", "let", "int", "float", "bool", "true", "false", "as", "x", "i",
+            "count", "value_1", "_tmp", "letter", "intValue", "very_long_identifier_name"};
+    private final static String[] OP_FORMS = symbolicOps();
+
+    private Corpus() {
+    }
+
+    private static String[] symbolicOps() {
+        return OpTable.getInstance().getOps().stream()
+                .filter(op -> !Character.isLetter(op.charAt(0)))
+                .sorted()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Generates a source of exactly the given size that lexes without errors.
+     *
+     * @param mix  the token mix, one of the constants above.
+     * @param size the number of characters.
+     * @param seed the seed of the random choices.
+     * @return the source.
+     */
+    public static String generate(String mix, int size, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(size + 128);
+        while (sb.length() < size) {
+            switch (mix) {
+                case MIXED -> appendStatement(sb, random);
+                case NUMBERS -> sb.append(pick(NUMBER_FORMS, random)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+                case WORDS -> sb.append(pick(WORD_FORMS, random)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+                case OPS -> sb.append(pick(OP_FORMS, random)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+                case SPACES -> sb.append(" ".repeat(4 * (1 + random.nextInt(6)))).append(pick(WORD_FORMS, random))
+                        .append(random.nextInt(4) == 0 ? "\t\t" : "").append('\n');
+                default -> throw new IllegalArgumentException("Unknown token mix " + mix);
+            }
+        }
+        // Cut at a separator so that no token is split, then pad with spaces
+        int end = size;
+        while (end > 0 && !Character.isWhitespace(sb.charAt(end - 1))) {
+            --end;
+        }
+        sb.setLength(end);
+        sb.append(" ".repeat(size - end));
+        return sb.toString();
+    }
+
+    /**
+     * Appends a declaration or an assignment with an arithmetic expression.
+     *
+     * @param sb     the source being generated.
+     * @param random the random choices.
+     */
+    private static void appendStatement(StringBuilder sb, Random random) {
+        sb.append("    ");
+        if (random.nextBoolean()) {
+            sb.append(random.nextBoolean() ? "var " : "let ").append("x").append(random.nextInt(1000)).append(": ")
+                    .append(random.nextBoolean() ? "int" : "float").append(" = ");
+        } else {
+            sb.append("x").append(random.nextInt(1000)).append(" = ");
+        }
+        int numOperands = 1 + random.nextInt(5);
+        for (int i = 0; i < numOperands; ++i) {
+            if (i > 0) {
+                sb.append(' ').append("+-*/%".charAt(random.nextInt(5))).append(' ');
+            }
+            switch (random.nextInt(4)) {
+                case 0 -> sb.append(pick(NUMBER_FORMS, random));
+                case 1 -> sb.append("(y").append(random.nextInt(100)).append(" as float)");
+                default -> sb.append(pick(WORD_FORMS, random, 8));
+            }
+        }
+        sb.append(";\n");
+    }
+
+    private static String pick(String[] forms, Random random) {
+        return forms[random.nextInt(forms.length)];
+    }
+
+    // Picks one of the forms after the first few, such as the identifiers after the keywords
+    private static String pick(String[] forms, Random random, int from) {
+        return forms[from + random.nextInt(forms.length - from)];
+    }
+}
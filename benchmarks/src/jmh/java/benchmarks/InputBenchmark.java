@@ -0,0 +1,72 @@
+package benchmarks;
+
+import exceptions.SyntaxError;
+import lexers.Lexer;
+import lexers.MappedFileReader;
+import org.openjdk.jmh.annotations.*;
+import tokens.TokenType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares lexing a file through a BufferedReader with lexing it out of a memory-mapped region
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InputBenchmark {
+    @Param({"1", "64"})
+    private int sizeMb;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("microlexer", ".txt");
+        Random random = new Random(sizeMb);
+        long size = (long) sizeMb << 20;
+        long written = 0;
+        String line;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            while (written < size) {
+                line = "var x" + random.nextInt(1000) + ": float = " + random.nextInt(100) + "." +
+                        random.nextInt(100) + "e-3 * (y" + random.nextInt(1000) + " + .5);\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static int countToks(Lexer lexer) throws SyntaxError, IOException {
+        int count = 0;
+        while (lexer.consume().getType() != TokenType.EOF) {
+            ++count;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int bufferedReader() throws SyntaxError, IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return countToks(new Lexer(reader));
+        }
+    }
+
+    @Benchmark
+    public int mappedFile() throws SyntaxError, IOException {
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            return countToks(new Lexer(reader));
+        }
+    }
+}
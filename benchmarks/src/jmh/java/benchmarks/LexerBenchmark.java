@@ -0,0 +1,53 @@
+package benchmarks;
+
+import exceptions.SyntaxError;
+import lexers.Lexer;
+import org.openjdk.jmh.annotations.*;
+import tokens.Token;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Measures Lexer.consume() end to end, one token per operation, so the score is in tokens per second and the GC
+// profiler's gc.alloc.rate.norm is the number of bytes allocated per token
+// The input is lexed again from the start once EOF is reached, and the "megabytes" counter is the input throughput
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LexerBenchmark {
+    @Param({Corpus.MIXED, Corpus.NUMBERS, Corpus.WORDS, Corpus.OPS, Corpus.SPACES})
+    private String mix;
+    @Param({"65536", "4194304"})
+    private int size;
+    private String input;
+    private Lexer lexer;
+
+    // Counts the characters lexed, reported as a rate next to the token rate
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = Corpus.generate(mix, size, 42);
+        lexer = new Lexer(new StringReader(input));
+    }
+
+    @Benchmark
+    public Token consume(Counters counters) throws SyntaxError, IOException {
+        Token tok = lexer.consume();
+        if (tok.getType() == TokenType.EOF) {
+            // Each character is a byte of the ASCII source
+            counters.megabytes += input.length() / 1e6;
+            lexer = new Lexer(new StringReader(input));
+        }
+        return tok;
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import exceptions.SyntaxError;
+import lexers.Lexer;
+import org.openjdk.jmh.annotations.*;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Measures lexing a whole input with metrics disabled and with a listener, the score is in characters per second
+// With metrics disabled the score should match LexerBenchmark's on the same input, since the token path only checks
+// for a null field, and the gap to the listener run is the cost of counting
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetricsBenchmark {
+    private final static int SIZE = 1 << 20;
+    @Param({"disabled", "listener"})
+    private String metrics;
+    private String input;
+    private long numSessions;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = Corpus.generate(Corpus.MIXED, SIZE, 42);
+        Lexer.setMetricsListener(metrics.equals("listener") ? m -> ++numSessions : null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Lexer.setMetricsListener(null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int lex() throws SyntaxError, IOException {
+        Lexer lexer = new Lexer(new StringReader(input));
+        int numToks = 0;
+        while (lexer.consume().getType() != TokenType.EOF) {
+            ++numToks;
+        }
+        return numToks;
+    }
+}
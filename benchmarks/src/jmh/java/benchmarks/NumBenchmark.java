@@ -0,0 +1,87 @@
+package benchmarks;
+
+import exceptions.SyntaxError;
+import lexers.Lexer;
+import numbers.DecimalConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tokens.Token;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares using the numeric values computed while lexing with parsing the lexemes of number literals afterwards
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NumBenchmark {
+    private final static int NUM_LITERALS = 10000;
+    private String input;
+    private String[] lexemes;
+    private long[] significands;
+    private int[] exponents;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(17);
+        StringBuilder sb = new StringBuilder();
+        lexemes = new String[NUM_LITERALS];
+        significands = new long[NUM_LITERALS];
+        exponents = new int[NUM_LITERALS];
+        for (int i = 0; i < NUM_LITERALS; ++i) {
+            long significand = random.nextLong(1_000_000_000_000_000L);
+            int exponent = random.nextInt(-30, 30);
+            lexemes[i] = significand + "e" + exponent;
+            significands[i] = significand;
+            exponents[i] = exponent;
+            sb.append(lexemes[i]).append(i % 8 == 7 ? ";\n" : " + ");
+        }
+        input = sb.toString();
+    }
+
+    @Benchmark
+    public double lexWithValues() throws SyntaxError, IOException {
+        Lexer lexer = new Lexer(new StringReader(input));
+        double sum = 0;
+        Token tok;
+        while ((tok = lexer.consume()).getType() != TokenType.EOF) {
+            if (tok.getType() == TokenType.FLOAT_LITERAL || tok.getType() == TokenType.INT_LITERAL) {
+                sum += tok.getDoubleValue();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double lexThenParse() throws SyntaxError, IOException {
+        Lexer lexer = new Lexer(new StringReader(input));
+        double sum = 0;
+        Token tok;
+        while ((tok = lexer.consume()).getType() != TokenType.EOF) {
+            if (tok.getType() == TokenType.FLOAT_LITERAL || tok.getType() == TokenType.INT_LITERAL) {
+                sum += Double.parseDouble(tok.getValue());
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void convert(Blackhole bh) {
+        for (int i = 0; i < NUM_LITERALS; ++i) {
+            bh.consume(DecimalConverter.toDouble(significands[i], exponents[i]));
+        }
+    }
+
+    @Benchmark
+    public void parseDouble(Blackhole bh) {
+        for (String lexeme : lexemes) {
+            bh.consume(Double.parseDouble(lexeme));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import keywords.KeywordTable;
+import operators.OpTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tokens.TokenType;
+import types.TypeInfo;
+import types.TypeTable;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+// Compares the perfect-hash table lookups with HashMap lookups that need a string to be built first
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TableBenchmark {
+    // A mix of keywords, data types, operators and ids that miss every table
+    private final static String[] WORDS = {
+            "var", "let", "true", "false", "int", "float", "bool", "+", "-", "*", "/", "=", "(", ")", "as",
+            "x", "count", "value_1", "intValue", "letter"
+    };
+    private final static TypeInfo[] PRIMITIVE_TYPES = {TypeTable.INT, TypeTable.FLOAT, TypeTable.BOOL};
+    private final KeywordTable keywordTable = KeywordTable.getInstance();
+    private final TypeTable typeTable = TypeTable.getInstance();
+    private final OpTable opTable = OpTable.getInstance();
+    private final HashMap<String, TokenType> kwMap = new HashMap<>();
+    private final HashMap<String, TypeInfo> typeMap = new HashMap<>();
+    private final HashMap<String, TokenType> opMap = new HashMap<>();
+    // The words laid out back to back as if they were in the lexer's buffer
+    private char[] buf;
+    private int[] offs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (String kw : keywordTable.getKeywords()) {
+            kwMap.put(kw, keywordTable.getId(kw));
+        }
+        for (String typeId : typeTable.getTypeIds()) {
+            typeMap.put(typeId, typeTable.getType(typeId));
+        }
+        for (String op : opTable.getOps()) {
+            opMap.put(op, opTable.getId(op));
+        }
+        buf = String.join("", WORDS).toCharArray();
+        offs = new int[WORDS.length + 1];
+        for (int i = 0; i < WORDS.length; ++i) {
+            offs[i + 1] = offs[i] + WORDS[i].length();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(20)
+    public void hashMap(Blackhole bh) {
+        String str;
+        for (int i = 0; i < WORDS.length; ++i) {
+            str = new String(buf, offs[i], offs[i + 1] - offs[i]);
+            bh.consume(kwMap.get(str));
+            bh.consume(typeMap.get(str));
+            bh.consume(opMap.get(str));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(20)
+    public void perfectHash(Blackhole bh) {
+        int len;
+        for (int i = 0; i < WORDS.length; ++i) {
+            len = offs[i + 1] - offs[i];
+            bh.consume(keywordTable.getId(buf, offs[i], len));
+            bh.consume(typeTable.getType(buf, offs[i], len));
+            bh.consume(opTable.getId(buf, offs[i], len));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(9)
+    public void typeConv(Blackhole bh) {
+        for (TypeInfo srcType : PRIMITIVE_TYPES) {
+            for (TypeInfo destType : PRIMITIVE_TYPES) {
+                bh.consume(typeTable.getTypeConv(srcType, destType));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(20)
+    public void perfectHashStr(Blackhole bh) {
+        for (String word : WORDS) {
+            bh.consume(keywordTable.getId(word));
+            bh.consume(typeTable.getType(word));
+            bh.consume(opTable.getId(word));
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package cache;
+
+import exceptions.SyntaxError;
+import keywords.KeywordTable;
+import lexers.Lexer;
+import operators.OpTable;
+import tokens.TokenBuffer;
+import tokens.TokenType;
+import types.TypeTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caches the tokens of inputs on disk, keyed by a hash of the input's bytes and of the tables the lexer is built from
+// Entries are written to a temporary file and renamed into place, so several processes can share a cache directory
+public class TokenCache {
+    private final static int MAGIC = 0x4D4C5443;
+    // Bumped whenever the file layout or the way the lexer splits tokens changes
+    private final static int FORMAT_VERSION = 2;
+    // Magic, format version, fingerprint, source length and number of tokens
+    private final static int HEADER_SIZE = 4 + 4 + 32 + 4 + 4;
+    private final static String ENTRY_SUFFIX = ".tok";
+    private final static String TEMP_SUFFIX = ".part";
+    // Eviction brings the cache down to this fraction of its maximum size so that it does not run on every store
+    private final static double EVICTION_RATIO = 0.9;
+    // Temporary files older than this are left over from a process that died while writing and are deleted by eviction
+    private final static long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+    private final static TokenType[] TYPES = TokenType.values();
+    private final Path dir;
+    private final long maxSize;
+    // Size of the cache directory as last scanned plus what this process has stored since, other processes may have
+    // changed it in the meantime
+    private final AtomicLong estimatedSize;
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    // The table fingerprint along with the version of the type table it was computed from, the only table that can
+    // change after it is built
+    private static volatile Fingerprint fingerprint;
+
+    /**
+     * Opens a token cache in a directory, creating the directory if it does not exist.
+     *
+     * @param dir     the cache directory.
+     * @param maxSize the size in bytes the cache is kept under by evicting the least recently used entries.
+     * @throws IOException if the directory cannot be created or scanned.
+     */
+    public TokenCache(Path dir, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.dir = Files.createDirectories(dir);
+        this.maxSize = maxSize;
+        long size = 0;
+        for (Entry entry : listEntries()) {
+            size += entry.size();
+        }
+        estimatedSize = new AtomicLong(size);
+    }
+
+    // A file in the cache directory along with the attributes eviction needs
+    private record Entry(Path path, long size, FileTime lastUsed) {
+    }
+
+    private record Fingerprint(int typeTableVersion, byte[] digest) {
+    }
+
+    /**
+     * Computes a fingerprint of the keyword, type and operator tables and of the token types. A change in any of them
+     * can change how an input is lexed, so it gives the cache a different set of keys. The fingerprint is only
+     * computed again after a type has been registered.
+     *
+     * @return the SHA-256 digest of the tables.
+     */
+    public static byte[] getTableFingerprint() {
+        int version = TypeTable.getInstance().getVersion();
+        Fingerprint cached = fingerprint;
+        if (cached == null || cached.typeTableVersion() != version) {
+            cached = new Fingerprint(version, computeTableFingerprint());
+            fingerprint = cached;
+        }
+        return cached.digest().clone();
+    }
+
+    /**
+     * Computes the fingerprint of the tables from scratch.
+     *
+     * @return the SHA-256 digest of the tables.
+     */
+    private static byte[] computeTableFingerprint() {
+        MessageDigest digest = newDigest();
+        digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        // Token types are stored by ordinal
+        for (TokenType type : TYPES) {
+            digest.update(("type:" + type.name() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        // Sort the entries so that the fingerprint does not depend on the order of the tables' hash maps
+        KeywordTable kwTable = KeywordTable.getInstance();
+        TreeSet<String> entries = new TreeSet<>();
+        for (String kw : kwTable.getKeywords()) {
+            entries.add("kw:" + kw + "=" + kwTable.getId(kw));
+        }
+        for (String typeId : TypeTable.getInstance().getTypeIds()) {
+            entries.add("data_type:" + typeId);
+        }
+        OpTable opTable = OpTable.getInstance();
+        for (String op : opTable.getOps()) {
+            entries.add("op:" + op + "=" + opTable.getId(op));
+        }
+        for (String entry : entries) {
+            digest.update((entry + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lexes a UTF-8 file, loading its tokens from the cache if the same bytes have been lexed before.
+     *
+     * @param path the path of the file.
+     * @return a TokenBuffer object that stores every token in the file.
+     * @throws SyntaxError if there is a syntax error, inputs with errors are not cached.
+     * @throws IOException if the file cannot be read.
+     */
+    public TokenBuffer lex(Path path) throws SyntaxError, IOException {
+        return lex(Files.readAllBytes(path));
+    }
+
+    /**
+     * Lexes UTF-8 bytes, loading their tokens from the cache if the same bytes have been lexed before. Failing to read
+     * or write a cache entry is treated as a miss, the cache never makes lexing fail.
+     *
+     * @param input the bytes to be lexed.
+     * @return a TokenBuffer object that stores every token in the input.
+     * @throws SyntaxError if there is a syntax error, inputs with errors are not cached.
+     */
+    public TokenBuffer lex(byte[] input) throws SyntaxError {
+        byte[] fingerprint = getTableFingerprint();
+        MessageDigest digest = newDigest();
+        digest.update(fingerprint);
+        digest.update(input);
+        Path entryPath = dir.resolve(HexFormat.of().formatHex(digest.digest()) + ENTRY_SUFFIX);
+        String source = new String(input, StandardCharsets.UTF_8);
+
+        TokenBuffer toks = load(entryPath, source, fingerprint);
+        if (toks != null) {
+            numHits.incrementAndGet();
+            return toks;
+        }
+        numMisses.incrementAndGet();
+        try {
+            toks = Lexer.lexAll(source);
+        } catch (IOException e) {
+            // Reading from a string never fails
+            throw new UncheckedIOException(e);
+        }
+        store(entryPath, toks, fingerprint);
+        return toks;
+    }
+
+    /**
+     * Loads the tokens of a source from a cache entry by mapping the entry into memory.
+     *
+     * @param entryPath   the path of the entry.
+     * @param source      the source the tokens were lexed from.
+     * @param fingerprint the fingerprint the entry must have been written with.
+     * @return a TokenBuffer object or null if there is no valid entry.
+     */
+    private TokenBuffer load(Path entryPath, String source, byte[] fingerprint) {
+        MappedByteBuffer buff;
+        try (FileChannel channel = FileChannel.open(entryPath, StandardOpenOption.READ)) {
+            buff = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            // There is no entry or it cannot be read
+            return null;
+        }
+        try {
+            if (buff.getInt() != MAGIC || buff.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            byte[] entryFingerprint = new byte[fingerprint.length];
+            buff.get(entryFingerprint);
+            if (!MessageDigest.isEqual(entryFingerprint, fingerprint) || buff.getInt() != source.length()) {
+                return null;
+            }
+            int numToks = buff.getInt();
+            if (numToks <= 0 || buff.remaining() != entrySize(numToks) - HEADER_SIZE) {
+                return null;
+            }
+            // The columns are laid out one after another
+            int typesPos = HEADER_SIZE, startsPos = typesPos + numToks, lengthsPos = startsPos + numToks * 4,
+                    lineNumsPos = lengthsPos + numToks * 4;
+            TokenBuffer toks = new TokenBuffer(source, numToks);
+            int type;
+            for (int i = 0; i < numToks; ++i) {
+                type = buff.get(typesPos + i);
+                if (type < 0 || type >= TYPES.length) {
+                    return null;
+                }
+                toks.add(TYPES[type], buff.getInt(startsPos + i * 4), buff.getInt(lengthsPos + i * 4),
+                        buff.getInt(lineNumsPos + i * 4));
+            }
+            touch(entryPath);
+            return toks;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // A truncated or foreign file
+            return null;
+        }
+    }
+
+    private static long entrySize(int numToks) {
+        return HEADER_SIZE + numToks + 3L * numToks * 4;
+    }
+
+    /**
+     * Marks an entry as used just now, which is what eviction orders entries by.
+     *
+     * @param entryPath the path of the entry.
+     */
+    private static void touch(Path entryPath) {
+        try {
+            Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // The entry has been evicted by another process in the meantime
+        }
+    }
+
+    /**
+     * Writes the tokens of a source to a cache entry. The entry is written to a temporary file first and then renamed,
+     * so readers never see a partly written entry.
+     *
+     * @param entryPath   the path of the entry.
+     * @param toks        the tokens to be written.
+     * @param fingerprint the fingerprint of the tables the tokens were lexed with.
+     */
+    private void store(Path entryPath, TokenBuffer toks, byte[] fingerprint) {
+        int numToks = toks.size();
+        ByteBuffer buff = ByteBuffer.allocate((int) entrySize(numToks));
+        buff.putInt(MAGIC).putInt(FORMAT_VERSION).put(fingerprint).putInt(toks.getSource().length()).putInt(numToks);
+        for (int i = 0; i < numToks; ++i) {
+            buff.put((byte) toks.getType(i).ordinal());
+        }
+        for (int i = 0; i < numToks; ++i) {
+            buff.putInt(toks.getStart(i));
+        }
+        for (int i = 0; i < numToks; ++i) {
+            buff.putInt(toks.getLength(i));
+        }
+        for (int i = 0; i < numToks; ++i) {
+            buff.putInt(toks.getLineNum(i));
+        }
+        buff.flip();
+
+        Path tempPath = null;
+        try {
+            tempPath = Files.createTempFile(dir, "entry", TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                while (buff.hasRemaining()) {
+                    channel.write(buff);
+                }
+            }
+            Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The entry is simply not cached
+            if (tempPath != null) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException ignored) {
+                }
+            }
+            return;
+        }
+        if (estimatedSize.addAndGet(buff.limit()) > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Lists the finished entries in the cache directory. Temporary files are left out, since another process may still
+     * be writing one and is about to rename it into place.
+     *
+     * @return a list of entries.
+     * @throws IOException if the directory cannot be read.
+     */
+    private List<Entry> listEntries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + ENTRY_SUFFIX)) {
+            BasicFileAttributes attrs;
+            for (Path path : stream) {
+                try {
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Removed by another process while listing
+                    continue;
+                }
+                if (attrs.isRegularFile()) {
+                    entries.add(new Entry(path, attrs.size(), attrs.lastModifiedTime()));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the least recently used files until the cache is back under its eviction ratio. The directory is scanned
+     * again so that entries written by other processes are taken into account.
+     */
+    private synchronized void evict() {
+        if (estimatedSize.get() <= maxSize) {
+            // Another thread has evicted in the meantime
+            return;
+        }
+        List<Entry> entries;
+        try {
+            entries = listEntries();
+        } catch (IOException e) {
+            return;
+        }
+        deleteStaleTempFiles();
+        entries.sort(Comparator.comparing(Entry::lastUsed));
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.size();
+        }
+        long target = (long) (maxSize * EVICTION_RATIO);
+        for (Entry entry : entries) {
+            if (size <= target) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.path());
+            } catch (IOException e) {
+                // Still in use on a platform that does not allow deleting mapped files
+                continue;
+            }
+            size -= entry.size();
+        }
+        estimatedSize.set(size);
+    }
+
+    /**
+     * Deletes the temporary files that have not been written to for longer than any write takes, which no process is
+     * going to rename into place.
+     */
+    private void deleteStaleTempFiles() {
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + TEMP_SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < staleBefore) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    public long getNumMisses() {
+        return numMisses.get();
+    }
+}
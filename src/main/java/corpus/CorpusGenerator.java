@@ -0,0 +1,291 @@
+package corpus;
+
+import operators.OpTable;
+import tokens.TokenType;
+import types.TypeTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Random;
+
+// Generates programs that follow the README grammar, made of var/let declarations and assignments of expressions with
+// every operator in the OpTable object and every form of number, separated by ordinary and unusual whitespace
+// The same seed always gives the same program, and every program lexes without errors, so any lexer that reads it
+// differently from the reference lexer has a bug
+public class CorpusGenerator {
+    // Whitespace that Character.isWhitespace() accepts besides spaces, tabs and newlines
+    private final static String UNUSUAL_SPACES = "\u000B\f\u001C\u001D\u001E\u001F\u2003\u3000";
+    // Letters and digits outside ASCII, which also take more than one byte in UTF-8
+    private final static String UNICODE_LETTERS = "\u00E9\u00DF\u03BB\u0436\u4E2D";
+    private final static String UNICODE_DIGITS = "\u0663\u0967\uFF17";
+    // Runs of whitespace and identifiers this long cross the lexer's buffer boundaries
+    private final static int LONG_RUN = 10000;
+    private final Random random;
+    private final String[] typeIds;
+    private final String[] infixOps;
+    private final String[] prefixOps;
+    // Operators that only appear in the structure of a statement, such as ';', still get picked once in a while
+    private final String[] allOps;
+    // Every prefix of an operator that is longer than one character, an operator followed by a character that
+    // extends it into one of these would be read as a longer operator
+    private final HashSet<String> opPrefixes = new HashSet<>();
+    private final StringBuilder sb = new StringBuilder();
+    // The kind and text of the last token written, which decide whether the next one needs a space before it
+    private Kind lastKind = Kind.SPACE;
+    private String lastTok = "";
+
+    private enum Kind {
+        WORD, NUMBER, OP, SPACE
+    }
+
+    public CorpusGenerator(long seed) {
+        random = new Random(seed);
+        typeIds = TypeTable.getInstance().getTypeIds().stream().sorted().toArray(String[]::new);
+        OpTable opTable = OpTable.getInstance();
+        allOps = opTable.getOps().stream().sorted().toArray(String[]::new);
+        infixOps = opTable.getOps().stream().filter(op -> opTable.isInfix(opTable.getId(op)) &&
+                opTable.getId(op) != TokenType.ASSIGNMENT).sorted().toArray(String[]::new);
+        prefixOps = opTable.getOps().stream().filter(op -> opTable.isPrefix(opTable.getId(op))).sorted()
+                .toArray(String[]::new);
+        for (String op : allOps) {
+            for (int i = 2; i <= op.length(); ++i) {
+                opPrefixes.add(op.substring(0, i));
+            }
+        }
+    }
+
+    /**
+     * Generates a program of about the given size, writing it one statement at a time so that its size is not limited
+     * by the heap.
+     *
+     * @param out  where the program is written.
+     * @param size the number of characters to write, the last statement may go past it.
+     * @throws IOException if the program cannot be written.
+     */
+    public void generate(Appendable out, long size) throws IOException {
+        long written = 0;
+        while (written < size) {
+            appendStatement();
+            out.append(sb);
+            written += sb.length();
+            sb.setLength(0);
+        }
+    }
+
+    /**
+     * Generates a program of about the given size in memory.
+     *
+     * @param size the number of characters to generate.
+     * @return the program.
+     */
+    public String generate(int size) {
+        StringBuilder program = new StringBuilder(size + 256);
+        try {
+            generate(program, size);
+        } catch (IOException e) {
+            // Appending to a StringBuilder never fails
+            throw new UncheckedIOException(e);
+        }
+        return program.toString();
+    }
+
+    private void appendStatement() {
+        switch (random.nextInt(10)) {
+            case 0, 1, 2, 3 -> {
+                // Declaration: (var|let) id (':' type)? '=' expr ';'
+                appendTok(Kind.WORD, random.nextBoolean() ? "var" : "let");
+                appendTok(Kind.WORD, randomId());
+                if (random.nextInt(3) > 0) {
+                    appendTok(Kind.OP, ":");
+                    appendTok(Kind.WORD, pick(typeIds));
+                }
+                appendTok(Kind.OP, "=");
+                appendExpr(0);
+            }
+            case 4 -> {
+                // Tokens in any order, which a lexer has to read the same way as in a statement
+                int numToks = 1 + random.nextInt(8);
+                for (int i = 0; i < numToks; ++i) {
+                    appendAnyTok();
+                }
+            }
+            default -> {
+                // Assignment: id ('.' id)* '=' expr ';'
+                appendTok(Kind.WORD, randomId());
+                while (random.nextInt(4) == 0) {
+                    appendTok(Kind.OP, ".");
+                    appendTok(Kind.WORD, randomId());
+                }
+                appendTok(Kind.OP, "=");
+                appendExpr(0);
+            }
+        }
+        appendTok(Kind.OP, ";");
+        appendSpace(true);
+    }
+
+    /**
+     * Appends an expression: prefixOp* operand ('as' type)? (infixOp expr)?
+     *
+     * @param depth the number of enclosing parentheses, which limits nesting.
+     */
+    private void appendExpr(int depth) {
+        while (random.nextInt(5) == 0) {
+            appendTok(Kind.OP, pick(prefixOps));
+        }
+        int choice = random.nextInt(depth < 4 ? 10 : 8);
+        if (choice < 4) {
+            appendTok(Kind.NUMBER, randomNumber());
+        } else if (choice < 6) {
+            appendTok(Kind.WORD, randomId());
+        } else if (choice < 8) {
+            appendTok(Kind.WORD, random.nextBoolean() ? "true" : "false");
+        } else {
+            // Brackets do not have to match, a lexer does not check them
+            appendTok(Kind.OP, random.nextBoolean() ? "(" : "{");
+            appendExpr(depth + 1);
+            appendTok(Kind.OP, random.nextBoolean() ? ")" : "}");
+        }
+        if (random.nextInt(6) == 0) {
+            appendTok(Kind.WORD, "as");
+            appendTok(Kind.WORD, pick(typeIds));
+        }
+        if (random.nextInt(3) > 0) {
+            appendTok(Kind.OP, pick(infixOps));
+            appendExpr(depth);
+        }
+    }
+
+    private void appendAnyTok() {
+        switch (random.nextInt(3)) {
+            case 0 -> appendTok(Kind.NUMBER, randomNumber());
+            case 1 -> appendTok(Kind.WORD, randomId());
+            default -> {
+                String op = pick(allOps);
+                appendTok(Character.isLetter(op.charAt(0)) ? Kind.WORD : Kind.OP, op);
+            }
+        }
+    }
+
+    /**
+     * Appends a token, with whitespace before it if it cannot directly follow the last token.
+     *
+     * @param kind the kind of token.
+     * @param tok  the token's text.
+     */
+    private void appendTok(Kind kind, String tok) {
+        if (needsSpace(kind, tok) || random.nextInt(3) > 0) {
+            appendSpace(false);
+        }
+        sb.append(tok);
+        lastKind = kind;
+        lastTok = tok;
+    }
+
+    /**
+     * Checks if the last token and a token would be read as something else without whitespace between them. Words and
+     * numbers run into each other, a dot runs into digits, and an operator can run into the next one.
+     *
+     * @param kind the kind of the next token.
+     * @param tok  the text of the next token.
+     * @return true if whitespace is needed and false otherwise.
+     */
+    private boolean needsSpace(Kind kind, String tok) {
+        return switch (lastKind) {
+            case SPACE -> false;
+            case WORD -> kind != Kind.OP;
+            case NUMBER -> kind != Kind.OP || tok.charAt(0) == '.';
+            case OP -> lastTok.endsWith(".") && kind == Kind.NUMBER ||
+                    kind == Kind.OP && opPrefixes.contains(lastTok + tok.charAt(0));
+        };
+    }
+
+    /**
+     * Appends a run of whitespace, usually a single space or newline but sometimes tabs, Windows line endings, unusual
+     * whitespace characters or a run long enough to cross buffer boundaries.
+     *
+     * @param lineBreak true if the whitespace should end the line and false otherwise.
+     */
+    private void appendSpace(boolean lineBreak) {
+        int choice = random.nextInt(1000);
+        if (choice < 700) {
+            sb.append(lineBreak ? "\n" : " ");
+        } else if (choice < 800) {
+            sb.append(lineBreak ? "\r\n" : "\t");
+        } else if (choice < 900) {
+            sb.append(lineBreak ? "\n\n    " : "  ");
+        } else if (choice < 980) {
+            sb.append(UNUSUAL_SPACES.charAt(random.nextInt(UNUSUAL_SPACES.length())));
+        } else if (choice < 999) {
+            sb.append(" \t".repeat(random.nextInt(8))).append(lineBreak ? "\n" : " ");
+        } else {
+            sb.append(" ".repeat(random.nextInt(LONG_RUN)))
+                    .append(lineBreak ? "\n".repeat(1 + random.nextInt(3)) : " ");
+        }
+        lastKind = Kind.SPACE;
+        lastTok = "";
+    }
+
+    private String randomId() {
+        StringBuilder id = new StringBuilder();
+        int len = random.nextInt(10000) == 0 ? random.nextInt(LONG_RUN) + 1 : random.nextInt(12) + 1;
+        id.append(random.nextInt(10) == 0 ? '_' : randomLetter());
+        for (int i = 1; i < len; ++i) {
+            int choice = random.nextInt(10);
+            id.append(choice == 0 ? '_' : choice < 3 ? (char) ('0' + random.nextInt(10)) : randomLetter());
+        }
+        return id.toString();
+    }
+
+    private char randomLetter() {
+        if (random.nextInt(50) == 0) {
+            return UNICODE_LETTERS.charAt(random.nextInt(UNICODE_LETTERS.length()));
+        }
+        char c = (char) ('a' + random.nextInt(26));
+        return random.nextInt(4) == 0 ? Character.toUpperCase(c) : c;
+    }
+
+    /**
+     * Generates a number in one of the forms of the grammar, digits optFrac optExp or frac optExp. Integers are kept
+     * small enough to fit into a long, floating-point numbers are kept within the range of a double.
+     *
+     * @return the number's text.
+     */
+    private String randomNumber() {
+        StringBuilder num = new StringBuilder();
+        switch (random.nextInt(6)) {
+            case 0 -> {
+                // Integer with an exponent, which is a floating-point literal if a negative one leaves a fraction
+                num.append(randomDigits(1 + random.nextInt(6))).append('e');
+                if (random.nextBoolean()) {
+                    num.append(random.nextBoolean() ? '+' : '-');
+                }
+                num.append(random.nextInt(10));
+            }
+            case 1 -> num.append(randomDigits(1 + random.nextInt(3))).append('.');
+            case 2 -> num.append('.').append(randomDigits(1 + random.nextInt(25)));
+            case 3 -> num.append(randomDigits(1 + random.nextInt(25))).append('.').append(randomDigits(1 +
+                    random.nextInt(25)));
+            default -> num.append(randomDigits(1 + random.nextInt(18)));
+        }
+        if (num.indexOf("e") < 0 && num.indexOf(".") >= 0 && random.nextInt(3) == 0) {
+            num.append('e').append(random.nextBoolean() ? "" : random.nextBoolean() ? "+" : "-")
+                    .append(random.nextInt(250));
+        }
+        return num.toString();
+    }
+
+    private String randomDigits(int len) {
+        StringBuilder digits = new StringBuilder(len);
+        for (int i = 0; i < len; ++i) {
+            digits.append(random.nextInt(100) == 0 ? UNICODE_DIGITS.charAt(random.nextInt(UNICODE_DIGITS.length())) :
+                    (char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    private String pick(String[] choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+}
@@ -0,0 +1,328 @@
+package corpus;
+
+import exceptions.SyntaxError;
+import lexers.CharReader;
+import lexers.Lexer;
+import lexers.MappedFileReader;
+import lexers.ParallelLexer;
+import tokens.Token;
+import tokens.TokenBuffer;
+import tokens.TokenType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Runs alternative lexer implementations side by side with the reference lexer, which reads the file through a
+// BufferedReader and scans it one character at a time, and reports the first token where each one diverges along with
+// the throughput of each
+// Tokens are compared by type, value and line number, and by source offset if both implementations know it. A syntax
+// error is compared by its message, so an alternative has to fail exactly where the reference fails
+public class DifferentialHarness {
+    private final static String REFERENCE = "reader";
+    private final Map<String, Implementation> impls = new LinkedHashMap<>();
+
+    // Reads tokens one at a time, returning EOF once the input is exhausted
+    @FunctionalInterface
+    public interface TokenSource extends Closeable {
+        Token next() throws SyntaxError, IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    // A lexer implementation, which opens a token source over a file
+    @FunctionalInterface
+    public interface Implementation {
+        TokenSource open(Path file) throws IOException;
+    }
+
+    /**
+     * A point where an alternative implementation reads the input differently from the reference.
+     *
+     * @param index       the index of the first token that differs.
+     * @param expected    the reference token or null if the reference fails there.
+     * @param actual      the alternative's token or null if the alternative fails there.
+     * @param expectedErr the reference's syntax error or null if there is none.
+     * @param actualErr   the alternative's syntax error or null if there is none.
+     */
+    public record Divergence(long index, Token expected, Token actual, SyntaxError expectedErr, SyntaxError actualErr) {
+        @Override
+        public String toString() {
+            return "token " + index + ": expected " + describe(expected, expectedErr) + " but got " +
+                    describe(actual, actualErr);
+        }
+
+        private static String describe(Token tok, SyntaxError err) {
+            if (err != null) {
+                return "error '" + err.getMessage() + "'";
+            }
+            return tok.getType() + " '" + tok.getValue() + "' on line " + tok.getLineNum() + " at offset " +
+                    tok.getStart();
+        }
+    }
+
+    /**
+     * The result of one implementation.
+     *
+     * @param name         the implementation's name.
+     * @param divergence   the first divergence from the reference or null if there is none.
+     * @param numToks      the number of tokens read before EOF or an error.
+     * @param error        the syntax error that stopped the implementation or null if it reached EOF.
+     * @param numBytes     the size of the input in bytes.
+     * @param elapsedNanos the time it took to read every token on its own, not side by side with the reference.
+     */
+    public record Report(String name, Divergence divergence, long numToks, SyntaxError error, long numBytes,
+                         long elapsedNanos) {
+        public double getToksPerSec() {
+            return numToks * 1e9 / elapsedNanos;
+        }
+
+        public double getMegabytesPerSec() {
+            return numBytes * 1e3 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %12d tokens %10.0f tokens/s %8.1f MB/s  %s%s", name, numToks,
+                    getToksPerSec(), getMegabytesPerSec(),
+                    divergence == null ? "identical" : "DIVERGES at " + divergence,
+                    error == null ? "" : ", stopped by error '" + error.getMessage() + "'");
+        }
+    }
+
+    /**
+     * Creates a harness with the reference lexer and the alternatives in this repository: scanning runs of characters
+     * with the Vector API if it is available, lexing a memory-mapped file and lexing the file in chunks on a fork-join
+     * pool.
+     */
+    public DifferentialHarness() {
+        impls.put(REFERENCE, file -> {
+            BufferedReader reader = Files.newBufferedReader(file);
+            return of(newLexer(reader, false), reader);
+        });
+        if (CharReader.isVectorScanningSupported()) {
+            add("vector", file -> {
+                BufferedReader reader = Files.newBufferedReader(file);
+                return of(newLexer(reader, true), reader);
+            });
+        }
+        add("mapped", file -> {
+            MappedFileReader reader = new MappedFileReader(file);
+            return of(new Lexer(reader), reader);
+        });
+        add("parallel", file -> {
+            String input = Files.readString(file);
+            return new TokenSource() {
+                private TokenBuffer.Cursor cursor;
+
+                @Override
+                public Token next() throws SyntaxError {
+                    if (cursor == null) {
+                        cursor = new ParallelLexer().lexAll(input).cursor();
+                    }
+                    if (!cursor.next()) {
+                        return new Token(null, TokenType.EOF);
+                    }
+                    return cursor.toToken();
+                }
+            };
+        });
+    }
+
+    /**
+     * Adds an alternative implementation to be compared with the reference.
+     *
+     * @param name the implementation's name in the report.
+     * @param impl the implementation.
+     */
+    public void add(String name, Implementation impl) {
+        if (impls.putIfAbsent(name, impl) != null) {
+            throw new IllegalArgumentException("An implementation named " + name + " already exists");
+        }
+    }
+
+    /**
+     * Creates a lexer whose reader scans runs of characters with or without the Vector API, whichever is the default.
+     *
+     * @param reader         the stream.
+     * @param vectorScanning true to scan with the Vector API and false to scan one character at a time.
+     * @return a Lexer object.
+     */
+    private static Lexer newLexer(Reader reader, boolean vectorScanning) {
+        boolean wasVectorScanning = CharReader.isVectorScanning();
+        CharReader.setVectorScanning(vectorScanning);
+        try {
+            return new Lexer(reader);
+        } finally {
+            CharReader.setVectorScanning(wasVectorScanning);
+        }
+    }
+
+    /**
+     * Creates a token source over a lexer that closes the lexer's stream when it is closed.
+     *
+     * @param lexer  the lexer.
+     * @param stream the lexer's stream.
+     * @return a TokenSource object.
+     */
+    public static TokenSource of(Lexer lexer, Closeable stream) {
+        return new TokenSource() {
+            @Override
+            public Token next() throws SyntaxError, IOException {
+                return lexer.consume();
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
+    /**
+     * Compares every alternative implementation with the reference on a file, then times each implementation on its
+     * own.
+     *
+     * @param file the file to be lexed.
+     * @return a report for each implementation, starting with the reference.
+     * @throws IOException if the file cannot be read.
+     */
+    public List<Report> run(Path file) throws IOException {
+        long numBytes = Files.size(file);
+        List<Report> reports = new ArrayList<>();
+        for (Map.Entry<String, Implementation> impl : impls.entrySet()) {
+            Divergence divergence = null;
+            if (!impl.getKey().equals(REFERENCE)) {
+                divergence = compare(impls.get(REFERENCE), impl.getValue(), file);
+            }
+            long start = System.nanoTime();
+            long numToks = 0;
+            SyntaxError error = null;
+            try (TokenSource source = impl.getValue().open(file)) {
+                while (source.next().getType() != TokenType.EOF) {
+                    ++numToks;
+                }
+            } catch (SyntaxError e) {
+                error = e;
+            }
+            reports.add(new Report(impl.getKey(), divergence, numToks, error, numBytes, System.nanoTime() - start));
+        }
+        return reports;
+    }
+
+    /**
+     * Reads the tokens of two implementations in lockstep until they differ or both reach the end.
+     *
+     * @return the first divergence or null if there is none.
+     */
+    private static Divergence compare(Implementation reference, Implementation alternative, Path file)
+            throws IOException {
+        try (TokenSource expectedSource = reference.open(file); TokenSource actualSource = alternative.open(file)) {
+            Token expected = null, actual = null;
+            SyntaxError expectedErr, actualErr;
+            for (long i = 0; ; ++i) {
+                expectedErr = null;
+                actualErr = null;
+                try {
+                    expected = expectedSource.next();
+                } catch (SyntaxError e) {
+                    expectedErr = e;
+                }
+                try {
+                    actual = actualSource.next();
+                } catch (SyntaxError e) {
+                    actualErr = e;
+                }
+                if (actualErr != null && expectedErr == null) {
+                    // An implementation that lexes the whole input at once fails before it returns any token, it
+                    // agrees with the reference if the reference fails with the same error later on
+                    expectedErr = drain(expectedSource);
+                    if (expectedErr != null && expectedErr.getMessage().equals(actualErr.getMessage())) {
+                        return null;
+                    }
+                    return new Divergence(i, expected, null, expectedErr, actualErr);
+                }
+                if (expectedErr != null) {
+                    if (actualErr == null || !expectedErr.getMessage().equals(actualErr.getMessage())) {
+                        return new Divergence(i, null, actual, expectedErr, actualErr);
+                    }
+                    return null;
+                }
+                if (!same(expected, actual)) {
+                    return new Divergence(i, expected, actual, null, null);
+                }
+                if (expected.getType() == TokenType.EOF) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of the tokens of a source.
+     *
+     * @return the syntax error that stops the source or null if it reaches EOF.
+     */
+    private static SyntaxError drain(TokenSource source) throws IOException {
+        try {
+            while (source.next().getType() != TokenType.EOF) {
+            }
+        } catch (SyntaxError e) {
+            return e;
+        }
+        return null;
+    }
+
+    private static boolean same(Token expected, Token actual) {
+        return expected.getType() == actual.getType() && Objects.equals(expected.getValue(), actual.getValue()) &&
+                (expected.getType() == TokenType.EOF || expected.getLineNum() == actual.getLineNum()) &&
+                (expected.getStart() < 0 || actual.getStart() < 0 || expected.getStart() == actual.getStart());
+    }
+
+    /**
+     * Generates a corpus and checks every implementation against the reference.
+     * Usage: DifferentialHarness [size in MB, default 64] [seed, default 42] [file to keep the corpus in]
+     *
+     * @param args the command-line arguments.
+     * @throws IOException if the corpus cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        long size = args.length > 0 ? Long.parseLong(args[0]) << 20 : 64L << 20;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        Path file = args.length > 2 ? Path.of(args[2]) : Files.createTempFile("corpus", ".txt");
+        boolean failed = false;
+        try {
+            long start = System.nanoTime();
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                new CorpusGenerator(seed).generate(writer, size);
+            }
+            System.out.printf("Generated %d bytes with seed %d in %.1f s%n", Files.size(file), seed,
+                    (System.nanoTime() - start) / 1e9);
+            for (Report report : new DifferentialHarness().run(file)) {
+                System.out.println(report);
+                // A generated corpus never has a syntax error
+                failed |= report.divergence() != null || report.error() != null;
+            }
+        } finally {
+            if (args.length <= 2) {
+                Files.deleteIfExists(file);
+            }
+        }
+        // Exit only after the finally block, which System.exit() would skip, so the temporary corpus is deleted
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package diagnostics;
+
+/**
+ * A syntax error that the lexer has recovered from.
+ *
+ * @param line   the line number where the invalid token starts.
+ * @param column the column number where the invalid token starts, counting from 1.
+ * @param msg    the error message without the position.
+ */
+public record Diagnostic(int line, int column, String msg) {
+    @Override
+    public String toString() {
+        return msg + " on line " + line + ", column " + column;
+    }
+}
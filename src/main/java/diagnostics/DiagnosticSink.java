@@ -0,0 +1,12 @@
+package diagnostics;
+
+// Receives the syntax errors that a lexer recovers from, such as a List's add method
+@FunctionalInterface
+public interface DiagnosticSink {
+    /**
+     * Reports a syntax error, which is called in the order the errors appear in the source.
+     *
+     * @param diagnostic the syntax error.
+     */
+    void report(Diagnostic diagnostic);
+}
@@ -1,7 +1,60 @@
 package exceptions;
 
 public class SyntaxError extends Exception {
+    private final String msg;
+    private final int line;
+    // 0 if the column is not known
+    private final int column;
+
     public SyntaxError(String msg, int line) {
-        super(msg + " on line " + line);
+        this(msg, line, true);
+    }
+
+    public SyntaxError(String msg, int line, int column) {
+        this(msg, line, column, true);
+    }
+
+    /**
+     * Creates a syntax error that may skip filling in its stack trace, which is most of the cost of throwing it and
+     * says nothing about where the error is in the source.
+     *
+     * @param msg                the error message without the line number.
+     * @param line               the line number where the error is.
+     * @param writableStackTrace false for a stackless error and true otherwise.
+     */
+    public SyntaxError(String msg, int line, boolean writableStackTrace) {
+        this(msg, line, 0, writableStackTrace);
+    }
+
+    /**
+     * Creates a syntax error at a line and column that may skip filling in its stack trace.
+     *
+     * @param msg                the error message without the line number.
+     * @param line               the line number where the error is.
+     * @param column             the column where the error is, counting from 1, or 0 if it is not known.
+     * @param writableStackTrace false for a stackless error and true otherwise.
+     */
+    public SyntaxError(String msg, int line, int column, boolean writableStackTrace) {
+        super(msg + " on line " + line + (column > 0 ? ", column " + column : ""), null, true, writableStackTrace);
+        this.msg = msg;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the error message without the line number.
+     *
+     * @return a string as the error message.
+     */
+    public String getMsg() {
+        return msg;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
     }
 }
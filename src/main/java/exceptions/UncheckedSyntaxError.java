@@ -0,0 +1,13 @@
+package exceptions;
+
+// Wraps a SyntaxError where a checked exception cannot be thrown, such as in a stream pipeline
+public class UncheckedSyntaxError extends RuntimeException {
+    public UncheckedSyntaxError(SyntaxError cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public SyntaxError getCause() {
+        return (SyntaxError) super.getCause();
+    }
+}
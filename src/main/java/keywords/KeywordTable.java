@@ -1,29 +1,37 @@
 package keywords;
 
+import tables.PerfectHashTable;
 import tokens.TokenType;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
 
 public class KeywordTable {
     private final HashMap<String, TokenType> kwMap = new HashMap<>();
+    // Perfect hash compiled from the keyword map
+    private PerfectHashTable<TokenType> kwLookup;
     private final static KeywordTable INSTANCE = new KeywordTable();
+    // Only read and written while holding the class lock in getInstance()
     private static boolean init = false;
 
     private KeywordTable() {
     }
 
     /**
-     * Initializes the only instance of KeywordTable if it has not been initialized and then returns it.
+     * Initializes the only instance of KeywordTable if it has not been initialized and then returns it. Initialization
+     * is synchronized, so the instance is fully built before any thread can see it and can be shared across threads.
      *
      * @return a KeywordTable object.
      */
-    public static KeywordTable getInstance() {
+    public static synchronized KeywordTable getInstance() {
         if (!init) {
             // Add keywords to table
             INSTANCE.kwMap.put("var", TokenType.VAR_DECL);
             INSTANCE.kwMap.put("let", TokenType.CONST_DECL);
             INSTANCE.kwMap.put("true", TokenType.BOOL_LITERAL);
             INSTANCE.kwMap.put("false", TokenType.BOOL_LITERAL);
+            INSTANCE.kwLookup = new PerfectHashTable<>(INSTANCE.kwMap);
 
             init = true;
         }
@@ -37,6 +45,27 @@ public class KeywordTable {
      * @return a TokenType object as the keyword's id if it exists, otherwise, return null.
      */
     public TokenType getId(String kwStr) {
-        return kwMap.get(kwStr);
+        return kwLookup.get(kwStr);
+    }
+
+    /**
+     * Gets the keyword's id associated with a range of characters without creating a string.
+     *
+     * @param buf the characters of the keyword.
+     * @param off the index of the first character.
+     * @param len the number of characters.
+     * @return a TokenType object as the keyword's id if it exists, otherwise, return null.
+     */
+    public TokenType getId(char[] buf, int off, int len) {
+        return kwLookup.get(buf, off, len);
+    }
+
+    /**
+     * Gets all the keywords in the table.
+     *
+     * @return a read-only set of keyword strings.
+     */
+    public Set<String> getKeywords() {
+        return Collections.unmodifiableSet(kwMap.keySet());
     }
 }
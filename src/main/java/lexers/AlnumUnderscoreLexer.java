@@ -8,44 +8,72 @@ import java.io.IOException;
 
 public class AlnumUnderscoreLexer {
     protected final CharReader charReader;
+    // Counted for LexerMetrics, words are read without backtracking
+    private long numAttempts = 0;
 
     public AlnumUnderscoreLexer(CharReader charReader) {
         this.charReader = charReader;
     }
 
     /**
-     * Reads alphanumeric and underscore characters into a string and stores it in a token.
-     * Grammar: ('_'|('a'-'z')|('A'-'Z'))('_'|('a'-'z')|('A'-'Z')|('0'-'9'))*
+     * Gets the number of times the lexer has been asked to read a token.
+     *
+     * @return a long integer as the number of attempts.
+     */
+    public long getNumAttempts() {
+        return numAttempts;
+    }
+
+    /**
+     * Reads alphanumeric and underscore characters and creates a token that spans them.
      *
      * @return a token containing a string of alphanumeric and underscore characters.
      * @throws IOException if the read operation causes an error.
      * @throws SyntaxError if there is an invalid character.
      */
     public Token read() throws IOException, SyntaxError {
+        long start = charReader.getOffset();
+        TokenType type = lex();
+        return type == null ? null : charReader.newToken(start, type);
+    }
+
+    /**
+     * Reads alphanumeric and underscore characters without creating a token, the word spans from the reader's mark to
+     * its current offset.
+     * Grammar: ('_'|('a'-'z')|('A'-'Z'))('_'|('a'-'z')|('A'-'Z')|('0'-'9'))*
+     *
+     * @return UNKNOWN if a word has been read and null otherwise.
+     * @throws IOException if the read operation causes an error.
+     * @throws SyntaxError if there is an invalid character.
+     */
+    TokenType lex() throws IOException, SyntaxError {
+        ++numAttempts;
         int c;
 
         // Check if the first character is end-of-stream or neither a letter nor '_'
-        if (charReader.isEos(c = charReader.peek()) || (!Character.isAlphabetic(c) && c != '_')) {
+        if (!charReader.isWordStart(c = charReader.peekCodePoint())) {
             return null;
         }
 
-        StringBuilder tokStr = new StringBuilder();
+        long start = charReader.mark();
         boolean end = false;
 
-        // Consume the character from the stream until it is a separator or a valid special character
+        // Consume the code points from the stream until one is a separator or a valid special character
         while (!charReader.isSep(c) && !end) {
             if (charReader.isAlnumUnderscore(c)) {
-                tokStr.append((char) c);
-                charReader.read();
+                charReader.readCodePoint();
+                // Skip the rest of an ASCII run at once
+                charReader.skipWordChars();
             } else if (charReader.isSpecialChar(c)) {
                 end = true;
             } else {
-                throw new SyntaxError("Invalid character '" + c + "' after '" + tokStr + "'", charReader.getCurrLine());
+                throw charReader.syntaxError(start, "Invalid character '" + Character.toString(c) + "' after '" +
+                        charReader.getLexeme(start) + "'");
             }
-            c = charReader.peek();
+            c = charReader.peekCodePoint();
         }
 
         // The string cannot be empty
-        return new Token(tokStr.toString(), TokenType.UNKNOWN, charReader.getCurrLine());
+        return TokenType.UNKNOWN;
     }
 }
@@ -0,0 +1,129 @@
+package lexers;
+
+import exceptions.SyntaxError;
+import tokens.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// Lexes many files at once, one lexer per file, each on its own virtual thread
+public class BatchLexer {
+    private final int maxConcurrency;
+
+    // Result of lexing one file, either the file's tokens or the error that stopped it from being lexed
+    public record FileResult(Path path, TokenBuffer toks, SyntaxError syntaxError, IOException ioError) {
+        public boolean isSuccess() {
+            return toks != null;
+        }
+    }
+
+    // Totals over every file in a batch
+    public record Stats(int numFiles, int numFailed, long numToks, long numChars, long elapsedNanos) {
+        public double getToksPerSec() {
+            return elapsedNanos == 0 ? 0 : numToks * 1e9 / elapsedNanos;
+        }
+
+        public double getCharsPerSec() {
+            return elapsedNanos == 0 ? 0 : numChars * 1e9 / elapsedNanos;
+        }
+    }
+
+    // Per-file results in the order the paths were given, along with the batch totals
+    public record Result(List<FileResult> fileResults, Stats stats) {
+    }
+
+    /**
+     * Creates a batch lexer that lexes at most the given number of files at the same time. Lexing is CPU-bound, so a
+     * limit around the number of processors keeps the number of file contents held in memory down without slowing the
+     * batch.
+     *
+     * @param maxConcurrency the maximum number of files being read and lexed at the same time.
+     */
+    public BatchLexer(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public BatchLexer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads a file as UTF-8 and lexes it.
+     *
+     * @param path the path of the file.
+     * @return a FileResult object with the file's tokens or the error that occurred.
+     */
+    private static FileResult lexFile(Path path) {
+        try {
+            String input = Files.readString(path);
+            return new FileResult(path, Lexer.lexAll(input), null, null);
+        } catch (SyntaxError e) {
+            return new FileResult(path, null, e, null);
+        } catch (IOException e) {
+            return new FileResult(path, null, null, e);
+        }
+    }
+
+    /**
+     * Lexes every file in the collection, a file that fails to be read or lexed does not stop the others.
+     *
+     * @param paths the paths of the files to be lexed.
+     * @return a Result object with a FileResult for each path and the batch totals.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the files.
+     */
+    public Result lexAll(Collection<Path> paths) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<FileResult>> futures = new ArrayList<>(paths.size());
+        long startTime = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path path : paths) {
+                futures.add(executor.submit(() -> {
+                    // Virtual threads are cheap, so every file gets one and the permits bound how many run at once
+                    permits.acquire();
+                    try {
+                        return lexFile(path);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        // Closing the executor waits for every task to finish, or cancels them if the wait is interrupted
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted while lexing files");
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        List<FileResult> fileResults = new ArrayList<>(futures.size());
+        int numFailed = 0;
+        long numToks = 0, numChars = 0;
+        FileResult fileResult;
+        for (Future<FileResult> future : futures) {
+            try {
+                fileResult = future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to lex a file", e.getCause());
+            }
+            if (fileResult.isSuccess()) {
+                numToks += fileResult.toks().size();
+                numChars += fileResult.toks().getSource().length();
+            } else {
+                ++numFailed;
+            }
+            fileResults.add(fileResult);
+        }
+        return new Result(fileResults, new Stats(fileResults.size(), numFailed, numToks, numChars, elapsedNanos));
+    }
+}
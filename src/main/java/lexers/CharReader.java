@@ -1,18 +1,70 @@
 package lexers;
 
-import java.io.BufferedReader;
+import exceptions.SyntaxError;
+import symbols.SymbolPool;
+import tokens.LineIndex;
+import tokens.Token;
+import tokens.TokenType;
+
 import java.io.IOException;
-import java.util.ArrayDeque;
+import java.io.Reader;
+import java.nio.CharBuffer;
 
 public class CharReader {
-    private final ArrayDeque<Integer> buff = new ArrayDeque<>();
-    private final BufferedReader reader;
+    private final static int BUFF_SIZE = 8192;
+    private final Reader reader;
     private final static int EOS = -1;
     private final static String SPECIAL_CHARS = "(){}+-*/%~!&|<>=,.;:_";
-    private int currLine = 1;
+    // Flags in the class bitmask of an ASCII character
+    final static int SPACE = 1;
+    final static int WORD_START = 1 << 1;
+    final static int DIGIT = 1 << 2;
+    final static int SPECIAL = 1 << 3;
+    final static int SEP = 1 << 4;
+    // Class bitmask of each ASCII character, so that classifying one takes an array load and a mask, only characters
+    // outside ASCII go through the Unicode tables
+    private final static byte[] ASCII_CLASSES = computeAsciiClasses();
+    // Whether the Vector API is available, which takes --add-modules jdk.incubator.vector
+    private final static boolean VECTOR_SUPPORTED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    // The scanner that readers created from now on skip runs of characters with
+    private static volatile CharScanner defaultScanner = initialScanner();
+    private final CharScanner scanner = defaultScanner;
+    // Window of characters read from the stream, only buff[0..buffLim) holds valid characters
+    private char[] buff = new char[BUFF_SIZE];
+    // Index of the next character to be read in the window
+    private int buffPos = 0;
+    // Number of valid characters in the window
+    private int buffLim = 0;
+    // Source offset of the first character in the window, a long since mapped files can be larger than 2 GB
+    private long buffOffset = 0;
+    // Index of the most recent mark in the window, -1 if there is none
+    private int markPos = -1;
+    // Whether a token holds a view over the window, in which case its characters must not be overwritten
+    private boolean shared = false;
+    private boolean eos = false;
+    // Where the lines of the characters read into the window start, newlines are found once per block, and the lines
+    // before the window are dropped as it moves on
+    private LineIndex lineIndex;
+    // Whether syntax errors are created without stack traces
+    private boolean stacklessErrors = false;
+
+    public CharReader(Reader reader) {
+        this(reader, 0, 1, 0);
+    }
 
-    public CharReader(BufferedReader reader) {
+    /**
+     * Creates a reader over a stream that starts in the middle of a source.
+     *
+     * @param reader    the stream.
+     * @param offset    the source offset of the stream's first character.
+     * @param line      the line number of the stream's first character.
+     * @param lineStart the source offset where the line of the stream's first character starts, columns on that line
+     *                  are counted from there.
+     */
+    public CharReader(Reader reader, long offset, int line, long lineStart) {
         this.reader = reader;
+        buffOffset = offset;
+        lineIndex = new LineIndex(lineStart, line);
     }
 
     /**
@@ -25,44 +77,163 @@ public class CharReader {
         return c == EOS;
     }
 
+    /**
+     * Computes the class bitmask of each ASCII character from the same definitions that the slow paths use.
+     *
+     * @return an array of 128 bitmasks.
+     */
+    private static byte[] computeAsciiClasses() {
+        byte[] classes = new byte[128];
+        for (int c = 0; c < classes.length; ++c) {
+            int mask = 0;
+            if (Character.isWhitespace(c)) {
+                mask |= SPACE | SEP;
+            }
+            if (Character.isAlphabetic(c) || c == '_') {
+                mask |= WORD_START;
+            }
+            if (Character.isDigit(c)) {
+                mask |= DIGIT;
+            }
+            if (SPECIAL_CHARS.indexOf(c) >= 0) {
+                mask |= SPECIAL;
+            }
+            if (c == ';') {
+                mask |= SEP;
+            }
+            classes[c] = (byte) mask;
+        }
+        return classes;
+    }
+
+    /**
+     * Checks if a character is in the ASCII range, end-of-stream is not.
+     *
+     * @param c the character(as an int).
+     * @return true if the character is ASCII and false otherwise.
+     */
+    private static boolean isAscii(int c) {
+        return (c & ~0x7F) == 0;
+    }
+
+    /**
+     * Checks if a character is ASCII and in any of the given classes.
+     *
+     * @param c       the character(as an int).
+     * @param classes a bitmask of class flags.
+     * @return true if the character is in one of the classes and false otherwise.
+     */
+    static boolean isAsciiIn(int c, int classes) {
+        return isAscii(c) && (ASCII_CLASSES[c] & classes) != 0;
+    }
+
+    /**
+     * Picks the scanner for readers created before any call to setVectorScanning(). Vector scanning is on if the
+     * Vector API is available, the platform's vectors hold at least 16 characters, and the system property
+     * microlexer.vectorScanning is not false.
+     *
+     * @return a CharScanner object.
+     */
+    private static CharScanner initialScanner() {
+        if (VECTOR_SUPPORTED && VectorCharScanner.isFast() &&
+                !"false".equals(System.getProperty("microlexer.vectorScanning"))) {
+            return VectorCharScanner.INSTANCE;
+        }
+        return ScalarCharScanner.INSTANCE;
+    }
+
+    /**
+     * Switches between skipping runs of spaces, word characters and digits a vector at a time and one character at a
+     * time, for readers created from now on. Both give the same tokens.
+     *
+     * @param enabled true to scan with the Vector API and false to scan one character at a time.
+     * @return true if vector scanning is on, which it cannot be without the jdk.incubator.vector module.
+     */
+    public static boolean setVectorScanning(boolean enabled) {
+        if (enabled && !VECTOR_SUPPORTED) {
+            return false;
+        }
+        defaultScanner = enabled ? VectorCharScanner.INSTANCE : ScalarCharScanner.INSTANCE;
+        return enabled;
+    }
+
+    /**
+     * Checks if the Vector API is available, which takes --add-modules jdk.incubator.vector.
+     *
+     * @return true if vector scanning can be turned on and false otherwise.
+     */
+    public static boolean isVectorScanningSupported() {
+        return VECTOR_SUPPORTED;
+    }
+
+    /**
+     * Checks if readers created now skip runs of characters with the Vector API.
+     *
+     * @return true if vector scanning is on and false otherwise.
+     */
+    public static boolean isVectorScanning() {
+        return defaultScanner != ScalarCharScanner.INSTANCE;
+    }
+
     /**
      * Determines if the character is a space.
      *
-     * @param c the character to be checked.
+     * @param c the character or code point to be checked.
      * @return true if the character is a space and false otherwise.
      */
     public boolean isSpace(int c) {
-        return Character.isWhitespace(c);
+        return isAscii(c) ? (ASCII_CLASSES[c] & SPACE) != 0 : c != EOS && Character.isWhitespace(c);
+    }
+
+    /**
+     * Determines if the character can start a word, which is a letter or an underscore.
+     *
+     * @param c the character or code point to be checked.
+     * @return true if the character can start a word and false otherwise.
+     */
+    public boolean isWordStart(int c) {
+        return isAscii(c) ? (ASCII_CLASSES[c] & WORD_START) != 0 : c != EOS && Character.isAlphabetic(c);
+    }
+
+    /**
+     * Determines if the character is a decimal digit.
+     *
+     * @param c the character or code point to be checked.
+     * @return true if the character is a digit and false otherwise.
+     */
+    public boolean isDigit(int c) {
+        return isAscii(c) ? (ASCII_CLASSES[c] & DIGIT) != 0 : c != EOS && Character.isDigit(c);
     }
 
     /**
      * Determines if the character is an alphanumeric or an underscore.
      *
-     * @param c the character to be checked.
+     * @param c the character or code point to be checked.
      * @return true if the character is an alphanumeric or an underscore and false otherwise.
      */
     public boolean isAlnumUnderscore(int c) {
-        return Character.isAlphabetic(c) || Character.isDigit(c) || c == '_';
+        return isAscii(c) ? (ASCII_CLASSES[c] & (WORD_START | DIGIT)) != 0 :
+                c != EOS && (Character.isAlphabetic(c) || Character.isDigit(c));
     }
 
     /**
-     * Determines if the character is a valid special character.
+     * Determines if the character is a valid special character, all of which are ASCII.
      *
-     * @param c the character to be checked.
+     * @param c the character or code point to be checked.
      * @return true if the character is a valid special character and false otherwise.
      */
     public boolean isSpecialChar(int c) {
-        return SPECIAL_CHARS.indexOf(c) >= 0;
+        return isAscii(c) && (ASCII_CLASSES[c] & SPECIAL) != 0;
     }
 
     /**
      * Determines if the character is a valid separator.
      *
-     * @param c the character to be checked.
+     * @param c the character or code point to be checked.
      * @return true if the character is a valid separator and false otherwise.
      */
     public boolean isSep(int c) {
-        return c == EOS || isSpace(c) || c == ';';
+        return isAscii(c) ? (ASCII_CLASSES[c] & SEP) != 0 : c == EOS || Character.isWhitespace(c);
     }
 
     /**
@@ -71,7 +242,48 @@ public class CharReader {
      * @return an integer as the current line number.
      */
     public int getCurrLine() {
-        return currLine;
+        return lineIndex.getLine(getOffset());
+    }
+
+    /**
+     * Gets the line of an offset that has been read.
+     *
+     * @param offset a source offset.
+     * @return an integer as the line number.
+     */
+    public int getLine(long offset) {
+        return lineIndex.getLine(offset);
+    }
+
+    /**
+     * Gets the column of an offset that has been read.
+     *
+     * @param offset a source offset.
+     * @return an integer as the column number, counting from 1.
+     */
+    public int getColumn(long offset) {
+        return lineIndex.getColumn(offset);
+    }
+
+    /**
+     * Sets whether the syntax errors created by syntaxError() skip filling in their stack traces.
+     *
+     * @param stacklessErrors true for stackless errors and false otherwise.
+     */
+    public void setStacklessErrors(boolean stacklessErrors) {
+        this.stacklessErrors = stacklessErrors;
+    }
+
+    /**
+     * Creates a syntax error at the line and column of the offending token for the component lexers to throw, which is
+     * also where error recovery reports it.
+     *
+     * @param start the source offset where the offending token starts.
+     * @param msg the error message without the line number.
+     * @return a SyntaxError object, which is stackless if stackless errors are turned on.
+     */
+    public SyntaxError syntaxError(long start, String msg) {
+        return new SyntaxError(msg, lineIndex.getLine(start), lineIndex.getColumn(start), !stacklessErrors);
     }
 
     /**
@@ -80,26 +292,127 @@ public class CharReader {
      * @throws IOException if the read operation causes an IO error.
      */
     public void skipSpaces() throws IOException {
-        int c;
-        while (!isEos(c = peek()) && isSpace(c)) {
-            read();
+        buffPos = scanner.skipSpaces(buff, buffPos, buffLim);
+        while (isSpace(peek())) {
+            // A space outside ASCII or the first space after a refill
+            buffPos = scanner.skipSpaces(buff, buffPos + 1, buffLim);
+        }
+    }
+
+    /**
+     * Skips the ASCII letters, digits and underscores from the current position on.
+     *
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public void skipWordChars() throws IOException {
+        while ((buffPos = scanner.skipWordChars(buff, buffPos, buffLim)) == buffLim && fill(1)) {
         }
     }
 
     /**
-     * Peeks without extracting a character from the internal buffer. If the internal buffer is empty, read a character
-     * from the stream into the buffer.
+     * Skips the ASCII digits from the current position up to the end of the internal buffer, without refilling it, so
+     * that the digits can be read back with charAt().
+     *
+     * @return the number of digits skipped.
+     */
+    public int skipDigits() {
+        int start = buffPos;
+        buffPos = scanner.skipDigits(buff, buffPos, buffLim);
+        return buffPos - start;
+    }
+
+    /**
+     * Gets a character that has been read since the most recent mark.
+     *
+     * @param offset the source offset of the character.
+     * @return the character.
+     */
+    public char charAt(long offset) {
+        return buff[(int) (offset - buffOffset)];
+    }
+
+    /**
+     * Gets the offset of the next character in the source.
+     *
+     * @return a long integer as the offset of the next character.
+     */
+    public long getOffset() {
+        return buffOffset + buffPos;
+    }
+
+    /**
+     * Refills the internal buffer from the stream until it holds the given number of characters that have not been
+     * read. Characters before the most recent mark are discarded to make room, the buffer only grows if a mark pins all
+     * of it. If tokens hold views over the buffer, the kept characters are moved to a new buffer instead of being
+     * shifted in place.
+     *
+     * @param need the number of unread characters needed, 1 for the next character.
+     * @return true if there are enough characters left to be read and false if the end of the stream is reached first.
+     * @throws IOException if there is an error while reading from the stream.
+     */
+    private boolean fill(int need) throws IOException {
+        while (buffLim - buffPos < need) {
+            if (eos || !fillOnce()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads one block of characters from the stream into the internal buffer, making room for it first.
+     *
+     * @return true if characters were read and false if the end of the stream is reached.
+     * @throws IOException if there is an error while reading from the stream.
+     */
+    private boolean fillOnce() throws IOException {
+        // Keep everything from the mark if there is one
+        int keep = markPos >= 0 ? markPos : buffPos;
+        if (keep > 0 || buffLim == buff.length) {
+            int kept = buffLim - keep;
+            if (shared || kept == buff.length) {
+                char[] newBuff = new char[kept == buff.length ? buff.length * 2 : buff.length];
+                System.arraycopy(buff, keep, newBuff, 0, kept);
+                buff = newBuff;
+                shared = false;
+            } else {
+                System.arraycopy(buff, keep, buff, 0, kept);
+            }
+            buffOffset += keep;
+            buffLim = kept;
+            buffPos -= keep;
+            if (markPos >= 0) {
+                markPos -= keep;
+            }
+            lineIndex = lineIndex.discardBefore(buffOffset);
+        }
+        int n = reader.read(buff, buffLim, buff.length - buffLim);
+        if (n <= 0) {
+            eos = true;
+            return false;
+        }
+        // Record the lines before any of the new characters is read
+        for (int i = scanner.findNewline(buff, buffLim, buffLim + n); i < buffLim + n;
+             i = scanner.findNewline(buff, i + 1, buffLim + n)) {
+            lineIndex.add(buffOffset + i + 1);
+        }
+        lineIndex.commit();
+        buffLim += n;
+        return true;
+    }
+
+    /**
+     * Peeks without extracting a character from the internal buffer. If the internal buffer is empty, read a block of
+     * characters from the stream into the buffer.
      *
      * @return the peeked character(as an int).
      * @throws IOException if there is an error while reading from the stream.
      */
     public int peek() throws IOException {
-        if (buff.isEmpty()) {
-            buff.addLast(reader.read());
+        if (buffPos == buffLim && !fill(1)) {
+            return EOS;
         }
-        // This buffer will never be empty
-        assert !buff.isEmpty();
-        return buff.peekFirst();
+        return buff[buffPos];
     }
 
     /**
@@ -110,33 +423,101 @@ public class CharReader {
      */
     public int read() throws IOException {
         int c = peek();
-        if (buff.pop() == '\n') {
-            // If '\n' is popped, increment the current line number
-            ++currLine;
+        if (c == EOS) {
+            return c;
         }
+        ++buffPos;
         return c;
     }
 
     /**
-     * Puts back a valid string into the internal buffer.
+     * Peeks at the next code point without extracting it, combining a surrogate pair into a supplementary code point.
+     * A surrogate that is not part of a pair is returned on its own.
      *
-     * @param str the string to be put back.
+     * @return the peeked code point.
+     * @throws IOException if there is an error while reading from the stream.
      */
-    public void putBack(String str) throws IllegalArgumentException {
-        if (str == null) {
-            throw new IllegalArgumentException("Null string cannot be put back into the lexer buffer");
+    public int peekCodePoint() throws IOException {
+        int c = peek();
+        if (!Character.isHighSurrogate((char) c) || buffLim - buffPos < 2 && !fill(2)) {
+            return c;
         }
-        if (str.isEmpty()) {
-            throw new IllegalArgumentException("Empty string cannot be put back into the lexer buffer");
+        char low = buff[buffPos + 1];
+        return Character.isLowSurrogate(low) ? Character.toCodePoint((char) c, low) : c;
+    }
+
+    /**
+     * Extracts the next code point, which takes two characters if it is supplementary.
+     *
+     * @return the extracted code point if there is any.
+     * @throws IOException if there is an error while reading from the stream.
+     */
+    public int readCodePoint() throws IOException {
+        int c = peekCodePoint();
+        if (Character.isSupplementaryCodePoint(c)) {
+            // Neither half of a surrogate pair is a newline
+            buffPos += 2;
+            return c;
         }
-        int c;
-        for (int i = str.length() - 1; i >= 0; --i) {
-            c = str.charAt(i);
-            if (c == '\n') {
-                // If '\n' is pushed, decrement the current line number
-                --currLine;
-            }
-            buff.addFirst(c);
+        return read();
+    }
+
+    /**
+     * Marks the current position as the start of a lexeme. Everything read after the most recent mark is kept in the
+     * internal buffer, so a mark is released by the next one.
+     *
+     * @return the source offset of the marked position.
+     */
+    public long mark() {
+        markPos = buffPos;
+        return getOffset();
+    }
+
+    /**
+     * Rewinds the reader to an offset at or after the most recent mark.
+     *
+     * @param offset the source offset to rewind to.
+     * @throws IllegalArgumentException if the offset is no longer in the internal buffer.
+     */
+    public void reset(long offset) throws IllegalArgumentException {
+        long pos = offset - buffOffset;
+        if (markPos < 0 || pos < markPos || pos > buffPos) {
+            throw new IllegalArgumentException("Cannot reset the lexer buffer to unmarked offset " + offset);
         }
+        buffPos = (int) pos;
+    }
+
+    /**
+     * Gets a view over the characters read since the given offset, which must be at or after the most recent mark.
+     *
+     * @param start the source offset where the lexeme starts.
+     * @return a CharSequence object over the internal buffer.
+     */
+    public CharSequence getLexeme(long start) {
+        return CharBuffer.wrap(buff, (int) (start - buffOffset), (int) (getOffset() - start));
+    }
+
+    /**
+     * Creates a token whose value is a view over the characters read since the given offset, which must be at or after
+     * the most recent mark. The characters are not copied until the token's value is needed.
+     *
+     * @param start the source offset where the token starts.
+     * @param type  the token type.
+     * @return a token that spans from the given offset to the current one.
+     */
+    public Token newToken(long start, TokenType type) {
+        shared = true;
+        return new Token(buff, (int) (start - buffOffset), type, start, getOffset(), lineIndex);
+    }
+
+    /**
+     * Interns the characters read since the given offset, which must be at or after the most recent mark.
+     *
+     * @param symbolPool the pool to intern the characters in.
+     * @param start      the source offset where the identifier starts.
+     * @return the identifier's symbol id.
+     */
+    public int intern(SymbolPool symbolPool, long start) {
+        return symbolPool.intern(buff, (int) (start - buffOffset), (int) (getOffset() - start));
     }
 }
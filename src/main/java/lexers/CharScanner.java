@@ -0,0 +1,47 @@
+package lexers;
+
+// Finds the end of a run of ASCII characters of one class in a window of characters, for the CharReader to skip over
+// whole runs instead of classifying them one character at a time
+// A scanner stops at the first character outside the class, including any character outside ASCII, which the
+// CharReader then classifies through the Unicode tables
+interface CharScanner {
+    /**
+     * Finds the end of a run of ASCII spaces, including newlines.
+     *
+     * @param buff the characters.
+     * @param pos  the index where the run starts.
+     * @param lim  the index right after the last character to be scanned.
+     * @return the index of the first character that is not in the run or lim.
+     */
+    int skipSpaces(char[] buff, int pos, int lim);
+
+    /**
+     * Finds the end of a run of ASCII letters, digits and underscores.
+     *
+     * @param buff the characters.
+     * @param pos  the index where the run starts.
+     * @param lim  the index right after the last character to be scanned.
+     * @return the index of the first character that is not in the run or lim.
+     */
+    int skipWordChars(char[] buff, int pos, int lim);
+
+    /**
+     * Finds the end of a run of ASCII digits.
+     *
+     * @param buff the characters.
+     * @param pos  the index where the run starts.
+     * @param lim  the index right after the last character to be scanned.
+     * @return the index of the first character that is not in the run or lim.
+     */
+    int skipDigits(char[] buff, int pos, int lim);
+
+    /**
+     * Finds the next newline, which the CharReader records in its line index for every block of characters it reads.
+     *
+     * @param buff the characters.
+     * @param pos  the index where the search starts.
+     * @param lim  the index right after the last character to be searched.
+     * @return the index of the newline or lim if there is none.
+     */
+    int findNewline(char[] buff, int pos, int lim);
+}
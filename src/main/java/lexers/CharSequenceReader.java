@@ -0,0 +1,54 @@
+package lexers;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+// Reads a range of an in-memory input without copying it into a string first, strings, string builders and char
+// buffers are copied straight into the caller's buffer in bulk
+class CharSequenceReader extends Reader {
+    private final CharSequence input;
+    private int pos;
+    private final int end;
+
+    CharSequenceReader(CharSequence input) {
+        this(input, 0, input.length());
+    }
+
+    /**
+     * Creates a reader over a range of an input.
+     *
+     * @param input the input.
+     * @param start the offset where the range starts.
+     * @param end   the offset where the range ends(exclusive).
+     */
+    CharSequenceReader(CharSequence input, int start, int end) {
+        this.input = input;
+        pos = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (pos == end) {
+            return -1;
+        }
+        int n = Math.min(len, end - pos);
+        if (input instanceof String s) {
+            s.getChars(pos, pos + n, cbuf, off);
+        } else if (input instanceof StringBuilder sb) {
+            sb.getChars(pos, pos + n, cbuf, off);
+        } else if (input instanceof CharBuffer cb) {
+            cb.get(cb.position() + pos, cbuf, off, n);
+        } else {
+            for (int i = 0; i < n; ++i) {
+                cbuf[off + i] = input.charAt(pos + i);
+            }
+        }
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+}
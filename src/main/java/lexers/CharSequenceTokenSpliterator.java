@@ -0,0 +1,72 @@
+package lexers;
+
+import symbols.SymbolPool;
+import tokens.Token;
+
+import java.util.Spliterator;
+
+// Lexes a range of an in-memory input, splitting it at the same boundaries as ParallelLexer
+class CharSequenceTokenSpliterator extends TokenSpliterator {
+    private final CharSequence input;
+    private final boolean splitAtSemicolon;
+    // Offset where the range starts, which is right after a boundary or at the start of the input
+    private int start;
+    private final int end;
+    // Line number at the start of the range
+    private int startLine;
+
+    CharSequenceTokenSpliterator(CharSequence input, SymbolPool symbolPool) {
+        this(input, symbolPool, 0, input.length(), 1, ParallelLexer.canSplitAtSemicolon());
+    }
+
+    private CharSequenceTokenSpliterator(CharSequence input, SymbolPool symbolPool, int start, int end, int startLine,
+                                         boolean splitAtSemicolon) {
+        super(symbolPool);
+        this.input = input;
+        this.start = start;
+        this.end = end;
+        this.startLine = startLine;
+        this.splitAtSemicolon = splitAtSemicolon;
+    }
+
+    @Override
+    Lexer newLexer() {
+        return new Lexer(new CharSequenceReader(input, start, end), start, startLine,
+                ParallelLexer.findLineStart(input, start));
+    }
+
+    @Override
+    long getRangeSize() {
+        return end - start;
+    }
+
+    /**
+     * Splits off the first half of the range, ending it right after the first boundary past the middle.
+     *
+     * @return a CharSequenceTokenSpliterator object over the first half or null if the range cannot be split.
+     */
+    @Override
+    public Spliterator<Token> trySplit() {
+        if (isStarted() || end - start < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        int bound = start + (end - start) / 2;
+        while (bound < end && !ParallelLexer.isBoundary(input.charAt(bound), splitAtSemicolon)) {
+            ++bound;
+        }
+        if (bound + 1 >= end) {
+            return null;
+        }
+        int numNewlines = 0;
+        for (int i = start; i <= bound; ++i) {
+            if (input.charAt(i) == '\n') {
+                ++numNewlines;
+            }
+        }
+        CharSequenceTokenSpliterator prefix = new CharSequenceTokenSpliterator(input, symbolPool, start, bound + 1,
+                startLine, splitAtSemicolon);
+        start = bound + 1;
+        startLine += numNewlines;
+        return prefix;
+    }
+}
@@ -0,0 +1,333 @@
+package lexers;
+
+import exceptions.SyntaxError;
+import operators.OpTable;
+import tokens.Token;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Keeps the tokens of a text up to date as the text is edited by re-lexing only the tokens around each edit, invalid
+// characters become ERROR tokens so that a text with syntax errors is re-lexed incrementally as well
+public class IncrementalLexer {
+    private final static int INIT_CAPACITY = 256;
+    private final static TokenType[] TYPES = TokenType.values();
+    // Number of characters past a token's end the lexer may look at before it decides where the token ends, an edit
+    // that far away from a token cannot change it
+    private final int lookahead;
+    // Text with a gap at the last edit, only text[0..gapStart) and text[gapEnd..text.length) hold valid characters
+    private char[] text = new char[INIT_CAPACITY];
+    private int gapStart = 0;
+    private int gapEnd = INIT_CAPACITY;
+    // Number of lines in the text
+    private int numLines = 1;
+    // Token columns with a gap at the last edit, tokens after the gap store their offsets relative to the end of the
+    // text and their line numbers relative to the last line so that an edit does not have to shift them
+    private int[] types = new int[INIT_CAPACITY];
+    private int[] starts = new int[INIT_CAPACITY];
+    private int[] lengths = new int[INIT_CAPACITY];
+    private int[] lineNums = new int[INIT_CAPACITY];
+    private int tokGapStart = 0;
+    private int tokGapEnd = INIT_CAPACITY;
+
+    /**
+     * Creates an incremental lexer and lexes the initial text.
+     *
+     * @param text the initial text.
+     */
+    public IncrementalLexer(CharSequence text) {
+        int maxOpLen = 1;
+        for (String op : OpTable.getInstance().getOps()) {
+            maxOpLen = Math.max(maxOpLen, op.length());
+        }
+        lookahead = maxOpLen;
+        edit(0, 0, text);
+    }
+
+    /**
+     * Replaces a range of the text and re-lexes the tokens around it. Lexing restarts at the end of the last token the
+     * edit cannot have changed and stops once a new token starts where an old token after the edit starts, from there
+     * on the old tokens are kept with their offsets and line numbers shifted. A syntax error does not stop lexing, the
+     * invalid characters up to the next separator become an ERROR token as in the lexer's recovery mode.
+     *
+     * @param offset     the offset of the first character to be replaced.
+     * @param removedLen the number of characters to be removed.
+     * @param inserted   the characters to be inserted in place of the removed ones.
+     */
+    public void edit(int offset, int removedLen, CharSequence inserted) {
+        Objects.checkFromIndexSize(offset, removedLen, getTextLength());
+        int restartTok = findRestartTok(offset);
+        int restartOffset = restartTok == 0 ? 0 : getEnd(restartTok - 1);
+        int restartLine = restartTok == 0 ? 1 : getLineNum(restartTok - 1);
+        // Tokens before the gap stay as they are, the ones after it are re-lexed or shifted
+        moveTokGap(restartTok);
+        replaceText(offset, removedLen, inserted);
+        // Old tokens that start at or after this offset in the new text start after the edit
+        int editEnd = offset + inserted.length();
+
+        int restartLineStart = restartOffset;
+        while (restartLineStart > 0 && charAt(restartLineStart - 1) != '\n') {
+            --restartLineStart;
+        }
+        Lexer lexer = new Lexer(new TextReader(restartOffset), restartOffset, restartLine, restartLineStart);
+        // An ERROR token ends at a separator like any other token, so it is kept and re-lexed like one, and the
+        // diagnostics are not needed
+        lexer.setDiagnosticSink(diagnostic -> {
+        });
+        Token tok;
+        try {
+            while ((tok = lexer.consume()).getType() != TokenType.EOF) {
+                // Drop the old tokens the new one has gone past
+                while (tokGapEnd < types.length && starts[tokGapEnd] + getTextLength() < tok.getStart()) {
+                    ++tokGapEnd;
+                }
+                if (tokGapEnd < types.length && starts[tokGapEnd] + getTextLength() == tok.getStart() &&
+                        tok.getStart() >= editEnd) {
+                    // The text from here on is the same as before the edit, so are the tokens
+                    return;
+                }
+                addTok(tok);
+            }
+        } catch (SyntaxError e) {
+            // The lexer recovers from syntax errors instead of throwing them
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            // Reading from the text never fails
+            throw new UncheckedIOException(e);
+        }
+        tokGapEnd = types.length;
+    }
+
+    /**
+     * Finds the first token that an edit at the given offset may change.
+     *
+     * @param offset the offset of the edit.
+     * @return the index of the first token that does not end at least lookahead characters before the offset.
+     */
+    private int findRestartTok(int offset) {
+        int lo = 0, hi = size(), mid;
+        while (lo < hi) {
+            mid = (lo + hi) >>> 1;
+            if (getEnd(mid) + lookahead <= offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Moves the token gap so that it starts at the given token index.
+     *
+     * @param index the index of the token right after the gap.
+     */
+    private void moveTokGap(int index) {
+        int textLen = getTextLength();
+        while (tokGapStart > index) {
+            --tokGapStart;
+            --tokGapEnd;
+            types[tokGapEnd] = types[tokGapStart];
+            starts[tokGapEnd] = starts[tokGapStart] - textLen;
+            lengths[tokGapEnd] = lengths[tokGapStart];
+            lineNums[tokGapEnd] = lineNums[tokGapStart] - numLines;
+        }
+        while (tokGapStart < index) {
+            types[tokGapStart] = types[tokGapEnd];
+            starts[tokGapStart] = starts[tokGapEnd] + textLen;
+            lengths[tokGapStart] = lengths[tokGapEnd];
+            lineNums[tokGapStart] = lineNums[tokGapEnd] + numLines;
+            ++tokGapStart;
+            ++tokGapEnd;
+        }
+    }
+
+    /**
+     * Inserts a token at the start of the token gap, growing the columns if the gap is empty.
+     *
+     * @param tok the token to be inserted.
+     */
+    private void addTok(Token tok) {
+        if (tokGapStart == tokGapEnd) {
+            int capacity = types.length * 2;
+            int numAfter = types.length - tokGapEnd;
+            types = grow(types, capacity, numAfter);
+            starts = grow(starts, capacity, numAfter);
+            lengths = grow(lengths, capacity, numAfter);
+            lineNums = grow(lineNums, capacity, numAfter);
+            tokGapEnd = capacity - numAfter;
+        }
+        types[tokGapStart] = tok.getType().ordinal();
+        // The text is in memory, so its offsets fit into an int
+        starts[tokGapStart] = (int) tok.getStart();
+        lengths[tokGapStart] = (int) (tok.getEnd() - tok.getStart());
+        lineNums[tokGapStart] = tok.getLineNum();
+        ++tokGapStart;
+    }
+
+    /**
+     * Copies a column into a larger array, keeping the entries after the gap at the end.
+     *
+     * @param column   the column to be copied.
+     * @param capacity the size of the new array.
+     * @param numAfter the number of entries after the gap.
+     * @return the new array.
+     */
+    private static int[] grow(int[] column, int capacity, int numAfter) {
+        int[] newColumn = Arrays.copyOf(column, capacity);
+        System.arraycopy(column, column.length - numAfter, newColumn, capacity - numAfter, numAfter);
+        return newColumn;
+    }
+
+    /**
+     * Replaces a range of the text, moving the text gap to it and updating the number of lines.
+     *
+     * @param offset     the offset of the first character to be replaced.
+     * @param removedLen the number of characters to be removed.
+     * @param inserted   the characters to be inserted in place of the removed ones.
+     */
+    private void replaceText(int offset, int removedLen, CharSequence inserted) {
+        // Move the gap to the offset
+        if (offset < gapStart) {
+            int n = gapStart - offset;
+            System.arraycopy(text, offset, text, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        } else if (offset > gapStart) {
+            int n = offset - gapStart;
+            System.arraycopy(text, gapEnd, text, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+        // Remove the characters by widening the gap
+        for (int i = 0; i < removedLen; ++i) {
+            if (text[gapEnd + i] == '\n') {
+                --numLines;
+            }
+        }
+        gapEnd += removedLen;
+        // Insert the new characters at the start of the gap
+        int len = inserted.length();
+        if (gapEnd - gapStart < len) {
+            int numAfter = text.length - gapEnd;
+            int capacity = Math.max(text.length * 2, gapStart + len + numAfter);
+            char[] newText = Arrays.copyOf(text, capacity);
+            System.arraycopy(text, gapEnd, newText, capacity - numAfter, numAfter);
+            text = newText;
+            gapEnd = capacity - numAfter;
+        }
+        char c;
+        for (int i = 0; i < len; ++i) {
+            c = inserted.charAt(i);
+            if (c == '\n') {
+                ++numLines;
+            }
+            text[gapStart++] = c;
+        }
+    }
+
+    public int getTextLength() {
+        return text.length - (gapEnd - gapStart);
+    }
+
+    public String getText() {
+        return new String(text, 0, gapStart) + new String(text, gapEnd, text.length - gapEnd);
+    }
+
+    public char charAt(int offset) {
+        Objects.checkIndex(offset, getTextLength());
+        return offset < gapStart ? text[offset] : text[offset + gapEnd - gapStart];
+    }
+
+    /**
+     * Gets the number of tokens, which does not count EOF.
+     *
+     * @return an integer as the number of tokens.
+     */
+    public int size() {
+        return types.length - (tokGapEnd - tokGapStart);
+    }
+
+    public TokenType getType(int i) {
+        return TYPES[types[checkIndex(i)]];
+    }
+
+    public int getStart(int i) {
+        int j = checkIndex(i);
+        return j < tokGapStart ? starts[j] : starts[j] + getTextLength();
+    }
+
+    public int getLength(int i) {
+        return lengths[checkIndex(i)];
+    }
+
+    public int getEnd(int i) {
+        return getStart(i) + getLength(i);
+    }
+
+    public int getLineNum(int i) {
+        int j = checkIndex(i);
+        return j < tokGapStart ? lineNums[j] : lineNums[j] + numLines;
+    }
+
+    /**
+     * Creates a Token object for a token in the text.
+     *
+     * @param i the index of the token.
+     * @return a Token object equal to the one the lexer would have returned.
+     */
+    public Token getToken(int i) {
+        int start = getStart(i), len = getLength(i);
+        char[] lexeme = new char[len];
+        for (int j = 0; j < len; ++j) {
+            lexeme[j] = charAt(start + j);
+        }
+        return new Token(lexeme, 0, getType(i), start, start + len, getLineNum(i));
+    }
+
+    /**
+     * Checks a token index and maps it to its position in the columns.
+     *
+     * @param i the index of the token.
+     * @return the position of the token in the columns.
+     */
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Token index " + i + " out of bounds for size " + size());
+        }
+        return i < tokGapStart ? i : i + tokGapEnd - tokGapStart;
+    }
+
+    // Reads the text from a given offset, skipping over the gap
+    private class TextReader extends Reader {
+        private int pos;
+
+        private TextReader(int pos) {
+            this.pos = pos;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            Objects.checkFromIndexSize(off, len, cbuf.length);
+            int textLen = getTextLength();
+            if (pos == textLen) {
+                return len == 0 ? 0 : -1;
+            }
+            int n = Math.min(len, textLen - pos);
+            // Copy the part before the gap, then the part after it
+            int before = Math.max(0, Math.min(n, gapStart - pos));
+            System.arraycopy(text, pos, cbuf, off, before);
+            System.arraycopy(text, pos + before + gapEnd - gapStart, cbuf, off + before, n - before);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package lexers;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// A JDK Flight Recorder event that spans a lex session, from the first token a lexer reads until EOF or a syntax error
+@Name("microlexer.LexSession")
+@Label("Lex Session")
+@Category("Microlexer")
+@Description("Lexing of one input by one lexer")
+class LexSessionEvent extends jdk.jfr.Event {
+    @Label("Session Id")
+    long sessionId;
+    @Label("Tokens")
+    long tokens;
+    @Label("Characters")
+    long characters;
+    @Label("Characters per Second")
+    double charsPerSec;
+    @Label("Errors")
+    long errors;
+    @Label("Word Lexer Attempts")
+    long wordAttempts;
+    @Label("Number Lexer Attempts")
+    long numberAttempts;
+    @Label("Number Lexer Backtracks")
+    long numberBacktracks;
+    @Label("Operator Lexer Attempts")
+    long operatorAttempts;
+    @Label("Operator Lexer Backtracks")
+    long operatorBacktracks;
+}
@@ -1,29 +1,131 @@
 package lexers;
 
+import diagnostics.Diagnostic;
+import diagnostics.DiagnosticSink;
 import exceptions.SyntaxError;
+import exceptions.UncheckedSyntaxError;
+import symbols.SymbolPool;
 import tokens.Token;
+import tokens.TokenBuffer;
 import tokens.TokenType;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayDeque;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Lexer {
     private final CharReader charReader;
-    private final AlnumUnderscoreLexer alnumUnderscoreLexer;
+    private final WordLexer wordLexer;
     private final NumLexer numLexer;
-    private final KeywordLexer keywordLexer;
-    private final TypeLexer typeLexer;
     private final OpLexer opLexer;
-    private final ArrayDeque<Token> tokBuff = new ArrayDeque<>();
+    private final SymbolPool symbolPool;
+    private final static int INIT_TOK_BUFF_SIZE = 16;
+    // Ring buffer of tokens read ahead of the parser or kept for a mark, the token at position i is stored at
+    // tokBuff[i & (tokBuff.length - 1)]
+    private Token[] tokBuff = new Token[INIT_TOK_BUFF_SIZE];
+    // Position of the oldest token in the buffer, counting every token read from the stream, positions are longs since
+    // a multi-GB input has more than 2^31 tokens
+    private long buffStart = 0;
+    // Position of the next token to be consumed
+    private long tokPos = 0;
+    // Position right after the newest token in the buffer
+    private long buffEnd = 0;
+    // Positions of the marks that have not been released, tokens from the earliest one on are kept in the buffer
+    private long[] marks = new long[INIT_TOK_BUFF_SIZE];
+    private int numMarks = 0;
+    // Source offset of the most recently read token
+    private long tokStart;
+    // Receives the syntax errors the lexer recovers from, null if syntax errors are thrown
+    private DiagnosticSink diagnosticSink;
+    private boolean stacklessErrors = false;
+    // Receives the metrics of lexers created after it is set, null if no metrics are reported
+    private static volatile MetricsListener metricsListener;
+    private final MetricsListener listener;
+    // The counters of this lexer's session, null if metrics are disabled
+    private final LexerMetrics metrics;
+    // Source offset of the stream's first character, so that the characters consumed can be counted
+    private final long startOffset;
+    // The in-memory input or the mapped file the lexer reads, null if it reads another kind of stream, tokens() splits
+    // either of them
+    private final CharSequence input;
+    private final MappedFileReader mappedReader;
 
-    public Lexer(BufferedReader reader) {
-        charReader = new CharReader(reader);
-        alnumUnderscoreLexer = new AlnumUnderscoreLexer(charReader);
+    public Lexer(Reader reader) {
+        this(reader, new SymbolPool());
+    }
+
+    public Lexer(Reader reader, SymbolPool symbolPool) {
+        this(new CharReader(reader), symbolPool, null, reader instanceof MappedFileReader m ? m : null);
+    }
+
+    public Lexer(CharSequence input) {
+        this(input, new SymbolPool());
+    }
+
+    /**
+     * Creates a lexer over an in-memory input, which is read in place, and whose tokens() can be split.
+     *
+     * @param input      the input to be lexed, such as a string or a CharBuffer.
+     * @param symbolPool the pool that ids are interned in.
+     */
+    public Lexer(CharSequence input, SymbolPool symbolPool) {
+        this(new CharReader(new CharSequenceReader(input)), symbolPool, input, null);
+    }
+
+    /**
+     * Creates a lexer over a stream that starts in the middle of a source, right after a token or at the start of the
+     * source, so that tokens carry their offsets, line numbers and columns in the whole source.
+     *
+     * @param reader    the stream.
+     * @param offset    the source offset of the stream's first character.
+     * @param line      the line number of the stream's first character.
+     * @param lineStart the source offset where the line of the stream's first character starts.
+     */
+    Lexer(Reader reader, long offset, int line, long lineStart) {
+        this(new CharReader(reader, offset, line, lineStart), new SymbolPool(), null, null);
+    }
+
+    private Lexer(CharReader charReader, SymbolPool symbolPool, CharSequence input, MappedFileReader mappedReader) {
+        this.symbolPool = symbolPool;
+        this.charReader = charReader;
+        this.input = input;
+        this.mappedReader = mappedReader;
+        wordLexer = new WordLexer(charReader, symbolPool);
         numLexer = new NumLexer(charReader);
-        keywordLexer = new KeywordLexer(charReader);
-        typeLexer = new TypeLexer(charReader);
         opLexer = new OpLexer(charReader);
+        startOffset = charReader.getOffset();
+        listener = metricsListener;
+        metrics = LexerMetrics.isEnabled(listener) ? new LexerMetrics() : null;
+    }
+
+    /**
+     * Sets the listener that receives the metrics of every lex session, for lexers created from now on. A lexer also
+     * keeps metrics while a Flight Recorder recording has the microlexer.LexSession event enabled, and when neither is
+     * the case, it keeps none at all.
+     *
+     * @param listener the listener or null to stop reporting metrics.
+     */
+    public static void setMetricsListener(MetricsListener listener) {
+        metricsListener = listener;
+    }
+
+    /**
+     * Gets the metrics of the lexer's session so far, the counters of the component lexers are only filled in once the
+     * session ends.
+     *
+     * @return a LexerMetrics object or null if the lexer keeps no metrics.
+     */
+    public LexerMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -35,6 +137,38 @@ public class Lexer {
         return charReader.getCurrLine();
     }
 
+    /**
+     * Gets the pool that ids are interned in.
+     *
+     * @return a SymbolPool object.
+     */
+    public SymbolPool getSymbolPool() {
+        return symbolPool;
+    }
+
+    /**
+     * Sets whether syntax errors are thrown without stack traces, which makes throwing them much cheaper on inputs with
+     * many errors.
+     *
+     * @param stacklessErrors true for stackless errors and false otherwise.
+     */
+    public void setStacklessErrors(boolean stacklessErrors) {
+        this.stacklessErrors = stacklessErrors;
+        charReader.setStacklessErrors(stacklessErrors || diagnosticSink != null);
+    }
+
+    /**
+     * Switches the lexer into recovery mode, where a syntax error is reported to the sink instead of being thrown. The
+     * invalid characters from where the token starts up to the next separator become an ERROR token, and lexing goes
+     * on after them.
+     *
+     * @param diagnosticSink the sink for syntax errors or null to throw them again.
+     */
+    public void setDiagnosticSink(DiagnosticSink diagnosticSink) {
+        this.diagnosticSink = diagnosticSink;
+        charReader.setStacklessErrors(stacklessErrors || diagnosticSink != null);
+    }
+
     /**
      * Looks ahead to and removes the next token from the buffer.
      *
@@ -43,8 +177,11 @@ public class Lexer {
      * @throws IOException if the read operation causes an IO error.
      */
     public Token consume() throws SyntaxError, IOException {
-        Token tok = lookahead();
-        tokBuff.removeFirst();
+        Token tok = peek(0);
+        ++tokPos;
+        if (numMarks == 0) {
+            trim(tokPos);
+        }
         return tok;
     }
 
@@ -56,52 +193,375 @@ public class Lexer {
      * @throws IOException if the read operation causes an IO error.
      */
     public Token lookahead() throws SyntaxError, IOException {
+        return peek(0);
+    }
+
+    /**
+     * Looks ahead to a token without removing any token from the stream, reading tokens into the buffer as needed.
+     * Every token past EOF is EOF.
+     *
+     * @param k the number of tokens to skip, 0 for the next token.
+     * @return the k-th token after the next one.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public Token peek(int k) throws SyntaxError, IOException {
+        if (k < 0) {
+            throw new IllegalArgumentException("Cannot peek at a token before the next one");
+        }
         // Reads from the token buffer before extracting characters from the stream
-        if (!tokBuff.isEmpty()) {
-            return tokBuff.peekFirst();
+        while (buffEnd - tokPos <= k) {
+            if (buffEnd - buffStart == tokBuff.length) {
+                growTokBuff();
+            }
+            tokBuff[(int) (buffEnd & (tokBuff.length - 1))] = readTok();
+            ++buffEnd;
+        }
+        return tokBuff[(int) ((tokPos + k) & (tokBuff.length - 1))];
+    }
+
+    /**
+     * Doubles the capacity of the token buffer, unwrapping the tokens so that they keep their positions.
+     */
+    private void growTokBuff() {
+        Token[] newTokBuff = new Token[tokBuff.length * 2];
+        for (long i = buffStart; i < buffEnd; ++i) {
+            newTokBuff[(int) (i & (newTokBuff.length - 1))] = tokBuff[(int) (i & (tokBuff.length - 1))];
         }
-        Token tok;
+        tokBuff = newTokBuff;
+    }
+
+    /**
+     * Drops the tokens before the given position from the buffer.
+     *
+     * @param pos the position of the oldest token to keep.
+     */
+    private void trim(long pos) {
+        while (buffStart < pos) {
+            tokBuff[(int) (buffStart & (tokBuff.length - 1))] = null;
+            ++buffStart;
+        }
+    }
+
+    /**
+     * Marks the position of the next token as a checkpoint that the lexer can be rewound to. Tokens from the mark on
+     * stay in the buffer until the mark is released.
+     *
+     * @return the position of the next token, which identifies the mark.
+     */
+    public long mark() {
+        if (numMarks == marks.length) {
+            marks = Arrays.copyOf(marks, marks.length * 2);
+        }
+        marks[numMarks++] = tokPos;
+        return tokPos;
+    }
+
+    /**
+     * Rewinds the lexer to a mark so that the tokens consumed since then are consumed again. The mark is kept and can
+     * be rewound to again.
+     *
+     * @param mark the mark returned by mark().
+     * @throws IllegalArgumentException if the mark has been released.
+     */
+    public void rewind(long mark) throws IllegalArgumentException {
+        if (findMark(mark) < 0) {
+            throw new IllegalArgumentException("Cannot rewind the lexer to released mark " + mark);
+        }
+        tokPos = mark;
+    }
+
+    /**
+     * Releases a mark, and once no marks are left, drops the tokens that have been consumed from the buffer.
+     *
+     * @param mark the mark returned by mark().
+     * @throws IllegalArgumentException if the mark has already been released.
+     */
+    public void release(long mark) throws IllegalArgumentException {
+        int i = findMark(mark);
+        if (i < 0) {
+            throw new IllegalArgumentException("Cannot release mark " + mark + " twice");
+        }
+        marks[i] = marks[--numMarks];
+        long keep = tokPos;
+        for (int j = 0; j < numMarks; ++j) {
+            keep = Math.min(keep, marks[j]);
+        }
+        trim(keep);
+    }
+
+    /**
+     * Finds a mark at a position, searching from the newest mark since marks are usually released in the reverse order
+     * they are made.
+     *
+     * @param mark the position of the mark.
+     * @return the index of the mark in marks or -1 if there is no mark at the position.
+     */
+    private int findMark(long mark) {
+        for (int i = numMarks - 1; i >= 0; --i) {
+            if (marks[i] == mark) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the next token from the stream and creates a Token object for it.
+     *
+     * @return the next token in the stream.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private Token readTok() throws SyntaxError, IOException {
+        TokenType type = readType();
+        if (type == TokenType.EOF) {
+            return new Token(null, TokenType.EOF);
+        }
+        Token tok = charReader.newToken(tokStart, type);
+        // The component lexer that read the token still holds its value
+        switch (type) {
+            case ID -> tok.setSymbol(wordLexer.getSymbolId(), symbolPool.getName(wordLexer.getSymbolId()));
+            case INT_LITERAL -> tok.setLongValue(numLexer.getLongValue());
+            case FLOAT_LITERAL -> tok.setDoubleValue(numLexer.getDoubleValue());
+        }
+        return tok;
+    }
+
+    /**
+     * Reads the next token from the stream without creating a Token object, counting it in the session's metrics if
+     * there are any. The token spans from tokStart to the reader's current offset.
+     *
+     * @return the type of the next token in the stream.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private TokenType readType() throws SyntaxError, IOException {
+        if (metrics == null || metrics.isEnded()) {
+            return lexType();
+        }
+        metrics.start();
+        TokenType type;
+        try {
+            type = lexType();
+        } catch (SyntaxError e) {
+            metrics.countError();
+            endSession();
+            throw e;
+        }
+        metrics.countToken(type);
+        if (type == TokenType.EOF) {
+            endSession();
+        }
+        return type;
+    }
+
+    /**
+     * Ends the lex session, reporting its metrics to the listener and to Flight Recorder.
+     */
+    private void endSession() {
+        metrics.end(charReader.getOffset() - startOffset, wordLexer.getNumAttempts(), numLexer.getNumAttempts(),
+                numLexer.getNumBacktracks(), opLexer.getNumAttempts(), opLexer.getNumBacktracks());
+        if (listener != null) {
+            listener.onSessionEnd(metrics);
+        }
+    }
+
+    /**
+     * Lexes the next token from the stream and records the offset where it starts.
+     *
+     * @return the type of the next token in the stream.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private TokenType lexType() throws SyntaxError, IOException {
         // Skip the white spaces
         charReader.skipSpaces();
+        // Mark the start so that an ERROR token can span from there
+        tokStart = charReader.mark();
         // Check if the token is EOF
-        if (charReader.isEos(charReader.peek())) {
-            tok = new Token(null, TokenType.EOF);
-            tokBuff.addLast(tok);
-            return tok;
-        }
-        // Check if the token is a keyword
-        tok = keywordLexer.read();
-        if (tok != null) {
-            tokBuff.addLast(tok);
-            return tok;
-        }
-        // Check if the token is a data type
-        tok = typeLexer.read();
-        if (tok != null) {
-            tokBuff.addLast(tok);
-            return tok;
-        }
-        // Check if the token is a number
-        tok = numLexer.read();
-        if (tok != null) {
-            tokBuff.addLast(tok);
-            return tok;
-        }
-        // Check if the token is an operator
-        tok = opLexer.read();
-        if (tok != null) {
-            tokBuff.addLast(tok);
-            return tok;
-        }
-        // Check if the token is id
-        tok = alnumUnderscoreLexer.read();
-        if (tok != null) {
-            tok.setType(TokenType.ID);
-            tokBuff.addLast(tok);
-            return tok;
-        }
-        // Cannot read the next token
-        throw new SyntaxError("Unable to get next token because of invalid syntax at '" +
-                (char) charReader.peek() + "'", charReader.getCurrLine());
+        int c = charReader.peekCodePoint();
+        if (charReader.isEos(c)) {
+            return TokenType.EOF;
+        }
+        if (diagnosticSink == null) {
+            return lexNonEmptyType(c);
+        }
+        try {
+            return lexNonEmptyType(c);
+        } catch (SyntaxError e) {
+            return recover(e);
+        }
+    }
+
+    /**
+     * Lexes a token that is not EOF with the component lexer picked based on its first character.
+     *
+     * @param c the first code point of the token.
+     * @return the type of the next token in the stream.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private TokenType lexNonEmptyType(int c) throws SyntaxError, IOException {
+        TokenType type;
+        // Pick the component lexer based on the first character
+        if (charReader.isWordStart(c)) {
+            // Keywords, data types, ids and word operators are all words
+            type = wordLexer.lex();
+        } else if (charReader.isDigit(c) || c == '.') {
+            // A dot that does not start a fraction is an operator
+            type = numLexer.lex();
+            if (type == null) {
+                type = opLexer.lex();
+            }
+        } else {
+            type = opLexer.lex();
+        }
+        if (type == null) {
+            // Cannot read the next token
+            throw charReader.syntaxError(tokStart, "Unable to get next token because of invalid syntax at '" +
+                    Character.toString(c) + "'");
+        }
+        return type;
+    }
+
+    /**
+     * Reports a syntax error in the token that starts at tokStart and skips to the next separator.
+     *
+     * @param e the syntax error.
+     * @return ERROR, the token spans the skipped characters.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private TokenType recover(SyntaxError e) throws IOException {
+        diagnosticSink.report(new Diagnostic(e.getLine(), e.getColumn(), e.getMsg()));
+        // Skip at least one character so that lexing moves on, tokens never span a newline so neither does this
+        if (charReader.getOffset() == tokStart) {
+            charReader.read();
+        }
+        while (!charReader.isSep(charReader.peek())) {
+            charReader.read();
+        }
+        return TokenType.ERROR;
+    }
+
+    /**
+     * Lexes a whole input into a token buffer, the last token in the buffer is EOF.
+     *
+     * @param input the input to be lexed.
+     * @return a TokenBuffer object that stores every token in the input.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public static TokenBuffer lexAll(CharSequence input) throws SyntaxError, IOException {
+        TokenBuffer toks = new TokenBuffer(input);
+        new Lexer(input).lexInto(toks);
+        return toks;
+    }
+
+    /**
+     * Reads every remaining token in the stream, including EOF, straight into the columns of a token buffer without
+     * creating Token objects.
+     *
+     * @param toks the buffer to append the tokens to.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    void lexInto(TokenBuffer toks) throws SyntaxError, IOException {
+        TokenType type;
+        do {
+            type = readType();
+            // Token buffers hold in-memory inputs, whose offsets fit into an int, and EOF is on line 1 like EOF tokens
+            toks.add(type, (int) tokStart, (int) (charReader.getOffset() - tokStart),
+                    type == TokenType.EOF ? 1 : charReader.getLine(tokStart));
+        } while (type != TokenType.EOF);
+    }
+
+    /**
+     * Creates a sequential stream over the remaining tokens in the stream, not including EOF. Syntax errors are thrown
+     * as UncheckedSyntaxError and IO errors as UncheckedIOException. If the lexer reads an in-memory input or a mapped
+     * file, has not read any token yet and throws syntax errors, the stream splits the input like tokens(CharSequence)
+     * and tokens(Path), interning ids in the lexer's pool. The number of tokens is not known before they are lexed, so
+     * the stream is not SIZED, which TokenBuffer.tokens() is.
+     *
+     * @return a Stream object over the remaining tokens, which can be turned into a parallel one.
+     */
+    public Stream<Token> tokens() {
+        if (buffEnd == 0 && diagnosticSink == null) {
+            if (input != null) {
+                return tokens(input, symbolPool);
+            }
+            if (mappedReader != null && mappedReader.isUnread()) {
+                return StreamSupport.stream(new MappedTokenSpliterator(mappedReader.getChannel(),
+                        mappedReader.getEnd(), symbolPool), false);
+            }
+        }
+        Spliterator<Token> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Token> action) {
+                Token tok;
+                try {
+                    tok = consume();
+                } catch (SyntaxError e) {
+                    throw new UncheckedSyntaxError(e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (tok.getType() == TokenType.EOF) {
+                    return false;
+                }
+                action.accept(tok);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Creates a stream over the tokens in an in-memory input, not including EOF. A parallel stream splits the input
+     * at newlines and lexes the parts on different threads, the tokens still come with their offsets and line numbers
+     * in the whole input. Syntax errors are thrown as UncheckedSyntaxError.
+     *
+     * @param input the input to be lexed, such as a string or a CharBuffer decoded from a mapped file.
+     * @return a sequential Stream object over the tokens, which can be turned into a parallel one.
+     */
+    public static Stream<Token> tokens(CharSequence input) {
+        return tokens(input, new SymbolPool());
+    }
+
+    /**
+     * Creates a stream over the tokens in an in-memory input like tokens(CharSequence), interning ids in the given
+     * pool. Every part of a parallel stream interns in the same pool, so ids are comparable across the whole stream.
+     *
+     * @param input      the input to be lexed.
+     * @param symbolPool the pool that ids are interned in, which the stream synchronizes on while it uses it.
+     * @return a sequential Stream object over the tokens, which can be turned into a parallel one.
+     */
+    public static Stream<Token> tokens(CharSequence input, SymbolPool symbolPool) {
+        return StreamSupport.stream(new CharSequenceTokenSpliterator(input, symbolPool), false);
+    }
+
+    /**
+     * Creates a stream over the tokens in a UTF-8 file, not including EOF, which are decoded and lexed straight out of
+     * the memory-mapped file. A parallel stream splits the file right after newlines and lexes the parts on different
+     * threads, the tokens still come with their offsets and line numbers in the whole file, and every part interns its
+     * ids in one shared pool. The stream keeps the file open until it is closed, so it is best used in a
+     * try-with-resources statement. Syntax errors are thrown as UncheckedSyntaxError and IO errors as
+     * UncheckedIOException.
+     *
+     * @param path the path of the file.
+     * @return a sequential Stream object over the tokens, which can be turned into a parallel one.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static Stream<Token> tokens(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return StreamSupport.stream(new MappedTokenSpliterator(channel, channel.size(), new SymbolPool()), false)
+                .onClose(() -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
     }
 }
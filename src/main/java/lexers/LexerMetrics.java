@@ -0,0 +1,217 @@
+package lexers;
+
+import tokens.TokenType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// The counters of one lex session, which runs from the first token a lexer reads until EOF or a syntax error is thrown
+// A lexer only keeps metrics if a MetricsListener is set or the LexSessionEvent is enabled in a Flight Recorder
+// recording when it is created, otherwise nothing is counted on the token path
+public final class LexerMetrics {
+    private final static AtomicLong nextSessionId = new AtomicLong();
+    private final static TokenType[] TYPES = TokenType.values();
+    private final long sessionId = nextSessionId.incrementAndGet();
+    private final long[] tokenCounts = new long[TYPES.length];
+    private final long[] attempts = new long[Component.values().length];
+    private final long[] backtracks = new long[Component.values().length];
+    private final LexSessionEvent event = new LexSessionEvent();
+    private long startNanos;
+    private long elapsedNanos;
+    private long numChars;
+    private long numThrownErrors;
+    private boolean started = false;
+    private boolean ended = false;
+
+    // The component lexers that the lexer picks from based on the first character of a token
+    public enum Component {
+        WORD, NUMBER, OPERATOR
+    }
+
+    /**
+     * Checks if a lexer created now should keep metrics.
+     *
+     * @param listener the listener the metrics would be reported to, null if there is none.
+     * @return true if there is a listener or a recording of LexSessionEvent and false otherwise.
+     */
+    static boolean isEnabled(MetricsListener listener) {
+        return listener != null || new LexSessionEvent().isEnabled();
+    }
+
+    /**
+     * Starts the session's clock and its Flight Recorder event, if they have not been started yet.
+     */
+    void start() {
+        if (!started) {
+            started = true;
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+    }
+
+    void countToken(TokenType type) {
+        ++tokenCounts[type.ordinal()];
+    }
+
+    void countError() {
+        ++numThrownErrors;
+    }
+
+    /**
+     * Ends the session, recording the counters that are kept outside the metrics.
+     *
+     * @param numChars       the number of characters consumed.
+     * @param wordAttempts   the number of tokens the word lexer was asked to read.
+     * @param numAttempts    the number of tokens the number lexer was asked to read.
+     * @param numBacktracks  the number of times the number lexer gave characters back.
+     * @param opAttempts     the number of tokens the operator lexer was asked to read.
+     * @param opBacktracks   the number of times the operator lexer gave characters back.
+     */
+    void end(long numChars, long wordAttempts, long numAttempts, long numBacktracks, long opAttempts,
+             long opBacktracks) {
+        start();
+        elapsedNanos = System.nanoTime() - startNanos;
+        ended = true;
+        this.numChars = numChars;
+        attempts[Component.WORD.ordinal()] = wordAttempts;
+        attempts[Component.NUMBER.ordinal()] = numAttempts;
+        backtracks[Component.NUMBER.ordinal()] = numBacktracks;
+        attempts[Component.OPERATOR.ordinal()] = opAttempts;
+        backtracks[Component.OPERATOR.ordinal()] = opBacktracks;
+        commitEvents();
+    }
+
+    /**
+     * Commits the session's Flight Recorder events, one for the session and one for each token type that occurred.
+     */
+    private void commitEvents() {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.sessionId = sessionId;
+        event.tokens = getNumToks();
+        event.characters = numChars;
+        event.charsPerSec = getCharsPerSec();
+        event.errors = getNumErrors();
+        event.wordAttempts = getAttempts(Component.WORD);
+        event.numberAttempts = getAttempts(Component.NUMBER);
+        event.numberBacktracks = getBacktracks(Component.NUMBER);
+        event.operatorAttempts = getAttempts(Component.OPERATOR);
+        event.operatorBacktracks = getBacktracks(Component.OPERATOR);
+        event.commit();
+        for (TokenType type : TYPES) {
+            if (tokenCounts[type.ordinal()] > 0) {
+                TokenCountEvent countEvent = new TokenCountEvent();
+                countEvent.sessionId = sessionId;
+                countEvent.tokenType = type.name();
+                countEvent.count = tokenCounts[type.ordinal()];
+                countEvent.commit();
+            }
+        }
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Gets the id of the session, which also identifies its Flight Recorder events.
+     *
+     * @return a long as the session id.
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Gets the number of tokens of a type, EOF is counted once the session reaches it.
+     *
+     * @param type the token type.
+     * @return a long as the number of tokens.
+     */
+    public long getTokenCount(TokenType type) {
+        return tokenCounts[type.ordinal()];
+    }
+
+    /**
+     * Gets the number of tokens of every type, including EOF.
+     *
+     * @return a long as the number of tokens.
+     */
+    public long getNumToks() {
+        long numToks = 0;
+        for (long count : tokenCounts) {
+            numToks += count;
+        }
+        return numToks;
+    }
+
+    /**
+     * Gets the number of characters consumed, including whitespace.
+     *
+     * @return a long as the number of characters.
+     */
+    public long getNumChars() {
+        return numChars;
+    }
+
+    /**
+     * Gets the number of tokens a component lexer was asked to read, including the ones it could not read.
+     *
+     * @param component the component lexer.
+     * @return a long as the number of attempts.
+     */
+    public long getAttempts(Component component) {
+        return attempts[component.ordinal()];
+    }
+
+    /**
+     * Gets the number of times a component lexer read past the end of its token and gave the characters back.
+     *
+     * @param component the component lexer.
+     * @return a long as the number of backtracks.
+     */
+    public long getBacktracks(Component component) {
+        return backtracks[component.ordinal()];
+    }
+
+    /**
+     * Gets the number of syntax errors, both the one that was thrown and the ones recovered from as ERROR tokens.
+     *
+     * @return a long as the number of errors.
+     */
+    public long getNumErrors() {
+        return numThrownErrors + tokenCounts[TokenType.ERROR.ordinal()];
+    }
+
+    /**
+     * Gets the time from the first token to the end of the session, which includes the time the caller spent between
+     * tokens.
+     *
+     * @return a long as the elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the input throughput of the session.
+     *
+     * @return a double as the number of characters consumed per second.
+     */
+    public double getCharsPerSec() {
+        return elapsedNanos == 0 ? 0 : numChars * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("session ").append(sessionId).append(": ").append(getNumToks())
+                .append(" tokens, ").append(numChars).append(" chars, ").append(getNumErrors()).append(" errors, ")
+                .append(String.format("%.0f", getCharsPerSec())).append(" chars/s");
+        for (Component component : Component.values()) {
+            sb.append(", ").append(component.name().toLowerCase()).append(' ').append(getAttempts(component))
+                    .append('/').append(getBacktracks(component));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package lexers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+// Reads UTF-8 characters straight out of a memory-mapped file
+public class MappedFileReader extends Reader {
+    // Size of the region mapped at a time, larger files are mapped window by window
+    private final static long WINDOW_SIZE = 1L << 30;
+    // The longest UTF-8 sequence, a window is slid forward before a sequence can straddle its end
+    private final static int MAX_SEQ_LEN = 4;
+    private final static char REPLACEMENT_CHAR = '\uFFFD';
+    private final FileChannel channel;
+    // Whether the reader opened the channel and closes it, readers over a range of a file share its channel
+    private final boolean ownsChannel;
+    // File offset right after the last byte to be read, the file size unless a range of the file is read
+    private final long end;
+    private MappedByteBuffer window;
+    // File offset of the first byte in the window
+    private long windowOffset;
+    // Low surrogate left over when a supplementary code point did not fit into the caller's buffer
+    private char pendingLow = 0;
+
+    public MappedFileReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        ownsChannel = true;
+        end = channel.size();
+        map(0);
+    }
+
+    /**
+     * Creates a reader over a range of an open file, which starts and ends at ASCII bytes so that no UTF-8 sequence
+     * straddles its bounds. Closing the reader leaves the channel open.
+     *
+     * @param channel the file's channel.
+     * @param start   the file offset where the range starts.
+     * @param end     the file offset where the range ends(exclusive).
+     * @throws IOException if the file cannot be mapped.
+     */
+    MappedFileReader(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        ownsChannel = false;
+        this.end = end;
+        map(start);
+    }
+
+    /**
+     * Checks if nothing has been read from the file yet.
+     *
+     * @return true if the reader is at the start of the file and false otherwise.
+     */
+    boolean isUnread() {
+        return windowOffset == 0 && window.position() == 0 && pendingLow == 0;
+    }
+
+    /**
+     * Gets the channel of the file the reader maps.
+     *
+     * @return a FileChannel object.
+     */
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the file offset right after the last byte to be read.
+     *
+     * @return a long integer as the end offset.
+     */
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * Maps a window of the file starting at the given offset.
+     *
+     * @param offset the file offset where the window starts.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private void map(long offset) throws IOException {
+        windowOffset = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, end - offset));
+    }
+
+    /**
+     * Slides the window forward if there are not enough bytes left in it to hold a full UTF-8 sequence.
+     *
+     * @return true if there are bytes left to be decoded and false if the end of the file is reached.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private boolean ensureWindow() throws IOException {
+        if (window.remaining() < MAX_SEQ_LEN && windowOffset + window.limit() < end) {
+            map(windowOffset + window.position());
+        }
+        return window.hasRemaining();
+    }
+
+    /**
+     * Decodes a multibyte UTF-8 sequence at the current position of the window. A malformed sequence is decoded as one
+     * replacement character for each maximal valid prefix, as recommended by the Unicode standard.
+     *
+     * @return the decoded code point.
+     */
+    private int decodeSeq() {
+        int pos = window.position();
+        int b0 = window.get(pos) & 0xFF;
+        int len, cp;
+        // Range of the second byte, narrowed to reject overlong encodings, surrogates and code points beyond U+10FFFF
+        int lo = 0x80, hi = 0xBF;
+        if (b0 >= 0xC2 && b0 <= 0xDF) {
+            len = 2;
+            cp = b0 & 0x1F;
+        } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+            len = 3;
+            cp = b0 & 0x0F;
+            if (b0 == 0xE0) {
+                lo = 0xA0;
+            } else if (b0 == 0xED) {
+                hi = 0x9F;
+            }
+        } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+            len = 4;
+            cp = b0 & 0x07;
+            if (b0 == 0xF0) {
+                lo = 0x90;
+            } else if (b0 == 0xF4) {
+                hi = 0x8F;
+            }
+        } else {
+            window.position(pos + 1);
+            return REPLACEMENT_CHAR;
+        }
+        int b;
+        for (int i = 1; i < len; ++i) {
+            b = pos + i < window.limit() ? window.get(pos + i) & 0xFF : -1;
+            if (b < lo || b > hi) {
+                window.position(pos + i);
+                return REPLACEMENT_CHAR;
+            }
+            cp = (cp << 6) | (b & 0x3F);
+            lo = 0x80;
+            hi = 0xBF;
+        }
+        window.position(pos + len);
+        return cp;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cbuf.length);
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        if (pendingLow != 0) {
+            cbuf[off + n++] = pendingLow;
+            pendingLow = 0;
+        }
+        while (n < len && ensureWindow()) {
+            // Fast path: copy a run of ASCII bytes
+            int pos = window.position();
+            int runEnd = Math.min(window.limit(), pos + len - n);
+            byte b;
+            while (pos < runEnd && (b = window.get(pos)) >= 0) {
+                cbuf[off + n++] = (char) b;
+                ++pos;
+            }
+            window.position(pos);
+            if (pos == runEnd) {
+                // Either the caller's buffer is full or the window has to be slid
+                continue;
+            }
+            // Slow path: make sure the whole sequence is in the window and decode it
+            ensureWindow();
+            int cp = decodeSeq();
+            if (Character.isBmpCodePoint(cp)) {
+                cbuf[off + n++] = (char) cp;
+            } else {
+                cbuf[off + n++] = Character.highSurrogate(cp);
+                if (n < len) {
+                    cbuf[off + n++] = Character.lowSurrogate(cp);
+                } else {
+                    pendingLow = Character.lowSurrogate(cp);
+                }
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
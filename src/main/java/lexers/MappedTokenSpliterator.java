@@ -0,0 +1,118 @@
+package lexers;
+
+import symbols.SymbolPool;
+import tokens.Token;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+
+// Lexes a byte range of a memory-mapped UTF-8 file, splitting it right after newlines, which never occur inside a
+// UTF-8 sequence, so that the parts are decoded and lexed straight out of the mapped file on different threads
+class MappedTokenSpliterator extends TokenSpliterator {
+    // Number of bytes read at a time while looking for a newline
+    private final static int SCAN_SIZE = 4096;
+    private final FileChannel channel;
+    // File offset where the range starts, which is right after a newline or at the start of the file
+    private long start;
+    private final long end;
+    // Source offset in characters and line number at the start of the range
+    private long charStart;
+    private int startLine;
+
+    MappedTokenSpliterator(FileChannel channel, long end, SymbolPool symbolPool) {
+        this(channel, 0, end, 0, 1, symbolPool);
+    }
+
+    private MappedTokenSpliterator(FileChannel channel, long start, long end, long charStart, int startLine,
+                                   SymbolPool symbolPool) {
+        super(symbolPool);
+        this.channel = channel;
+        this.start = start;
+        this.end = end;
+        this.charStart = charStart;
+        this.startLine = startLine;
+    }
+
+    @Override
+    Lexer newLexer() throws IOException {
+        // The range starts on a new line
+        return new Lexer(new MappedFileReader(channel, start, end), charStart, startLine, charStart);
+    }
+
+    @Override
+    long getRangeSize() {
+        return end - start;
+    }
+
+    /**
+     * Splits off the first half of the range, ending it right after the first newline past the middle. The characters
+     * and newlines in the first half are counted by decoding it, so that the second half knows its source offset and
+     * line number.
+     *
+     * @return a MappedTokenSpliterator object over the first half or null if the range cannot be split.
+     */
+    @Override
+    public Spliterator<Token> trySplit() {
+        if (isStarted() || end - start < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        try {
+            long bound = findNewline(start + (end - start) / 2);
+            if (bound + 1 >= end) {
+                return null;
+            }
+            long numChars = 0;
+            int numNewlines = 0;
+            char[] chars = new char[SCAN_SIZE];
+            int n;
+            try (MappedFileReader reader = new MappedFileReader(channel, start, bound + 1)) {
+                while ((n = reader.read(chars, 0, chars.length)) > 0) {
+                    numChars += n;
+                    for (int i = 0; i < n; ++i) {
+                        if (chars[i] == '\n') {
+                            ++numNewlines;
+                        }
+                    }
+                }
+            }
+            MappedTokenSpliterator prefix = new MappedTokenSpliterator(channel, start, bound + 1, charStart,
+                    startLine, symbolPool);
+            start = bound + 1;
+            charStart += numChars;
+            startLine += numNewlines;
+            return prefix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds the first newline byte at or after a file offset.
+     *
+     * @param from the file offset to start from.
+     * @return the file offset of the newline or the end of the range if there is none.
+     * @throws IOException if the file cannot be read.
+     */
+    private long findNewline(long from) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(SCAN_SIZE);
+        long pos = from;
+        int n;
+        while (pos < end) {
+            bytes.clear();
+            bytes.limit((int) Math.min(SCAN_SIZE, end - pos));
+            if ((n = channel.read(bytes, pos)) <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; ++i) {
+                if (bytes.get(i) == '\n') {
+                    return pos + i;
+                }
+            }
+            pos += n;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,12 @@
+package lexers;
+
+// Receives the metrics of every lex session once it ends, see Lexer.setMetricsListener()
+@FunctionalInterface
+public interface MetricsListener {
+    /**
+     * Called on the lexing thread when a lexer reaches EOF or throws a syntax error.
+     *
+     * @param metrics the metrics of the session.
+     */
+    void onSessionEnd(LexerMetrics metrics);
+}
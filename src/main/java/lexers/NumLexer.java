@@ -1,162 +1,373 @@
 package lexers;
 
 import exceptions.SyntaxError;
+import numbers.DecimalConverter;
 import tokens.Token;
 import tokens.TokenType;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 
 public class NumLexer {
+    // Number of significant digits kept while reading, 19 decimal digits always fit into 64 unsigned bits
+    private final static int MAX_SIG_DIGITS = 19;
+    // Exponents are capped at this magnitude while they are read, any number with a larger one is out of range
+    private final static int MAX_EXP = 100000;
     private final CharReader charReader;
+    // The number being read is significand * 10^exp10, where the significand is an unsigned integer
+    private long significand;
+    private int numSigDigits;
+    private int exp10;
+    // Whether nonzero digits beyond MAX_SIG_DIGITS have been dropped from the significand
+    private boolean truncated;
+    // Value of the most recent number, depending on its type
+    private long longValue;
+    private double doubleValue;
+    // States of the scanner, each named after the last part of the number that has been read
+    private final static int START = 0;
+    private final static int INT = 1;
+    private final static int LEADING_DOT = 2;
+    private final static int DOT = 3;
+    private final static int FRAC = 4;
+    private final static int EXP = 5;
+    private final static int EXP_SIGN = 6;
+    private final static int EXP_DIGITS = 7;
+    // Counted for LexerMetrics
+    private long numAttempts = 0;
+    private long numBacktracks = 0;
 
     public NumLexer(CharReader charReader) {
         this.charReader = charReader;
     }
 
     /**
-     * Reads a string from the stream to check if it matches the given string. Otherwise, it puts everything that has
-     * been read back to the buffer.
+     * Gets the number of times the lexer has been asked to read a token.
      *
-     * @param strToMatch the string to match.
-     * @return true if the read string matches the given string and false otherwise.
-     * @throws IOException if there is an error while reading.
+     * @return a long integer as the number of attempts.
      */
-    private boolean readStr(String strToMatch) throws IOException {
-        int c;
-        int i = 0;
-        boolean end = false;
-        StringBuilder buffer = new StringBuilder();
-        while (i < strToMatch.length() && !charReader.isEos(c = charReader.peek()) && !end) {
-            end = (char) c != strToMatch.charAt(i);
-            if (!end) {
-                // If the current character matches, update the temp buffer
-                buffer.append((char) c);
-                ++i;
-                charReader.read();
-            }
+    public long getNumAttempts() {
+        return numAttempts;
+    }
+
+    /**
+     * Gets the number of times the lexer has given characters back to the reader after reading past its token.
+     *
+     * @return a long integer as the number of backtracks.
+     */
+    public long getNumBacktracks() {
+        return numBacktracks;
+    }
+
+    /**
+     * Converts a character to the value of the decimal digit it represents. ASCII digits are checked directly, and only
+     * other characters go through the Unicode tables.
+     *
+     * @param c the character(as an int), which may be the end of the stream.
+     * @return the value of the digit or -1 if the character is not a digit.
+     */
+    private static int toDigit(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
         }
-        if (!strToMatch.contentEquals(buffer)) {
-            // Put back what has been read if what's in the buffer does not match the expected string
-            if (!buffer.isEmpty()) {
-                charReader.putBack(buffer.toString());
+        return c < 128 ? -1 : Character.digit(c, 10);
+    }
+
+    /**
+     * Appends a digit to the significand.
+     *
+     * @param digit  the value of the digit.
+     * @param isFrac true if the digit is in the fraction part and false otherwise.
+     */
+    private void addDigit(int digit, boolean isFrac) {
+        if (numSigDigits == 0 && digit == 0) {
+            // Leading zeros are not significant, but they shift the fraction
+            if (isFrac) {
+                --exp10;
+            }
+        } else if (numSigDigits < MAX_SIG_DIGITS) {
+            significand = significand * 10 + digit;
+            ++numSigDigits;
+            if (isFrac) {
+                --exp10;
+            }
+        } else {
+            // Drop the digit, an integer digit still scales the number
+            truncated |= digit != 0;
+            if (!isFrac) {
+                ++exp10;
             }
-            return false;
         }
-        return true;
     }
 
     /**
-     * Reads a sequence of digits.
-     * Grammar: ('0'-'9')+
+     * Reads the peeked digit and adds the run of ASCII digits after it in the reader's buffer to the significand. The
+     * reader finds the end of the run with its scanner, which may take a whole vector of digits per step.
      *
-     * @return a string containing a sequence of digits.
+     * @param isFrac true if the digits are in the fraction part and false otherwise.
      * @throws IOException if the read operation causes an error.
      */
-    private String readDigits() throws IOException {
-        int c;
-        StringBuilder digits = new StringBuilder();
-        while (!charReader.isEos(c = charReader.peek()) && Character.isDigit(c)) {
-            digits.append((char) c);
-            charReader.read();
+    private void addDigitRun(boolean isFrac) throws IOException {
+        charReader.read();
+        long start = charReader.getOffset();
+        long end = start + charReader.skipDigits();
+        for (long offset = start; offset < end; ++offset) {
+            addDigit(charReader.charAt(offset) - '0', isFrac);
         }
-        if (digits.isEmpty()) {
-            return null;
+    }
+
+    /**
+     * Converts the number that has been read to a double.
+     *
+     * @param start the source offset where the number starts.
+     * @return the nearest double.
+     * @throws SyntaxError if the number is too large to be a double.
+     */
+    private double toDouble(long start) throws SyntaxError {
+        double value = DecimalConverter.toDouble(significand, exp10);
+        if (truncated && value != DecimalConverter.toDouble(significand + 1, exp10)) {
+            // The dropped digits decide which way the number rounds
+            value = Double.parseDouble(toAscii(charReader.getLexeme(start)));
+        }
+        if (Double.isInfinite(value)) {
+            throw charReader.syntaxError(start, "Floating-point literal '" + charReader.getLexeme(start) +
+                    "' is out of range");
         }
-        return digits.toString();
+        return value;
     }
 
     /**
-     * Reads the fraction part in a numeric expression.
+     * Checks if the number that has been read without a dot is a whole number, which it may not be if it has a negative
+     * exponent. Numbers that are not are floating-point literals.
      *
-     * @param fillFrac true if the fraction must be filled with 0s when it is missing and false otherwise.
-     * @return a string containing the fraction and null otherwise.
-     * @throws IOException if the read operation causes an error.
+     * @param start the source offset where the number starts.
+     * @return true if the number is whole and false otherwise.
      */
-    private String readFrac(boolean fillFrac) throws IOException {
-        if (!readStr(".")) {
-            return null;
+    private boolean isWhole(long start) {
+        if (truncated) {
+            // The dropped digits decide, which is rare enough to be left to BigDecimal
+            try {
+                return new BigDecimal(toAscii(charReader.getLexeme(start))).stripTrailingZeros().scale() <= 0;
+            } catch (NumberFormatException e) {
+                // The exponent does not even fit into an int, a positive one only scales a whole number up
+                return exp10 > 0;
+            }
         }
-        String digits = readDigits();
-        if (digits == null) {
-            if (fillFrac) {
-                digits = "0";
-            } else {
-                charReader.putBack(".");
-                return null;
+        if (exp10 >= 0 || significand == 0) {
+            return true;
+        }
+        // The digits divided away must all be zeros, the significand is unsigned
+        long value = significand;
+        for (int i = 0; i < -exp10 && value != 0; ++i) {
+            if (Long.remainderUnsigned(value, 10) != 0) {
+                return false;
             }
+            value = Long.divideUnsigned(value, 10);
         }
-        return "." + digits;
+        return true;
     }
 
     /**
-     * Reads the optional exponent in a numeric expression.
+     * Converts the number that has been read to a long, the number must be whole.
      *
-     * @return a string containing the optional exponent.
-     * @throws IOException if the read operation causes an error.
-     * @throws SyntaxError if there is a syntax error.
+     * @param start the source offset where the number starts.
+     * @return the number's value.
+     * @throws SyntaxError if the number is too large to be a long.
      */
-    private String readExp() throws IOException, SyntaxError {
-        // Read e
-        if (!readStr("e")) {
-            return null;
+    private long toLong(long start) throws SyntaxError {
+        long value = significand;
+        if (!truncated) {
+            if (exp10 >= 0) {
+                // The significand is unsigned
+                if (value < 0) {
+                    throw outOfRange(start);
+                }
+                try {
+                    for (int i = 0; i < exp10 && value != 0; ++i) {
+                        value = Math.multiplyExact(value, 10);
+                    }
+                } catch (ArithmeticException e) {
+                    throw outOfRange(start);
+                }
+                return value;
+            }
+            // Only zeros are divided away
+            for (int i = 0; i < -exp10 && value != 0; ++i) {
+                value = Long.divideUnsigned(value, 10);
+            }
+            if (value < 0) {
+                throw outOfRange(start);
+            }
+            return value;
         }
-
-        StringBuilder exp = new StringBuilder("e");
-
-        // Read +/-
-        if (readStr("+")) {
-            exp.append("+");
-        } else if (readStr("-")) {
-            exp.append("-");
+        if (exp10 > 0) {
+            // There are more than MAX_SIG_DIGITS integer digits
+            throw outOfRange(start);
         }
+        // A long significand whose dropped digits are zeros or cancelled by a negative exponent
+        try {
+            return new BigDecimal(toAscii(charReader.getLexeme(start))).longValueExact();
+        } catch (ArithmeticException e) {
+            throw outOfRange(start);
+        }
+    }
 
-        // Read digits
-        String digits = readDigits();
-        if (digits == null) {
-            throw new SyntaxError("Expected a sequence of digits after '" + exp.charAt(exp.length() - 1) + "'",
-                    charReader.getCurrLine());
+    /**
+     * Replaces the digits in a lexeme with ASCII digits, which are the only ones the JDK's parsers accept.
+     *
+     * @param lexeme the lexeme of a number.
+     * @return a string with the same number in ASCII.
+     */
+    private static String toAscii(CharSequence lexeme) {
+        StringBuilder ascii = new StringBuilder(lexeme.length());
+        char c;
+        for (int i = 0; i < lexeme.length(); ++i) {
+            c = lexeme.charAt(i);
+            ascii.append(Character.isDigit(c) ? (char) ('0' + Character.digit(c, 10)) : c);
         }
+        return ascii.toString();
+    }
 
-        exp.append(digits);
-        return exp.toString();
+    private SyntaxError outOfRange(long start) {
+        return charReader.syntaxError(start, "Integer literal '" + charReader.getLexeme(start) + "' is out of range");
     }
 
     /**
-     * Reads a numeric expression.
+     * Reads a numeric expression in a single pass, each character is peeked once and either consumed or ends the
+     * number, and runs of ASCII digits are skipped at once. The only character that is given back is a leading '.'
+     * that is not followed by a digit.
+     * Grammar: digits ('.' digits?)? exp? | '.' digits exp?, where exp is 'e' ('+' | '-')? digits
      *
-     * @return a token whose string is the numeric expression.
+     * @return a token that spans the numeric expression or null if there is no number.
      * @throws IOException if the read operation causes an error.
      * @throws SyntaxError if there is a syntax error.
      */
     public Token read() throws IOException, SyntaxError {
-        StringBuilder tokStr = new StringBuilder();
+        long start = charReader.getOffset();
+        TokenType type = lex();
+        if (type == null) {
+            return null;
+        }
+        Token tok = charReader.newToken(start, type);
+        if (type == TokenType.FLOAT_LITERAL) {
+            tok.setDoubleValue(doubleValue);
+        } else {
+            tok.setLongValue(longValue);
+        }
+        return tok;
+    }
 
-        // Read sequence of digits
-        String digits = readDigits();
-        boolean hasDigits = digits != null;
+    /**
+     * Reads a numeric expression like read() without creating a token, the number spans from the reader's mark to its
+     * current offset and its value is kept for getLongValue() or getDoubleValue().
+     *
+     * @return INT_LITERAL or FLOAT_LITERAL, or null if there is no number.
+     * @throws IOException if the read operation causes an error.
+     * @throws SyntaxError if there is a syntax error.
+     */
+    TokenType lex() throws IOException, SyntaxError {
+        ++numAttempts;
+        long start = charReader.mark();
+        significand = 0;
+        numSigDigits = 0;
+        exp10 = 0;
+        truncated = false;
 
-        if (hasDigits) {
-            tokStr.append(digits);
-        } else {
-            tokStr.append("0");
+        int state = START, c, digit, exp = 0;
+        boolean isFp = false, negExp = false;
+        scan:
+        while (true) {
+            c = charReader.peek();
+            digit = toDigit(c);
+            switch (state) {
+                case START, INT -> {
+                    if (digit >= 0) {
+                        addDigit(digit, false);
+                        addDigitRun(false);
+                        state = INT;
+                        continue;
+                    } else if (c == '.') {
+                        state = state == INT ? DOT : LEADING_DOT;
+                        isFp = true;
+                    } else if (c == 'e' && state == INT) {
+                        state = EXP;
+                    } else {
+                        break scan;
+                    }
+                }
+                case LEADING_DOT, DOT, FRAC -> {
+                    if (digit >= 0) {
+                        addDigit(digit, true);
+                        addDigitRun(true);
+                        state = FRAC;
+                        continue;
+                    } else if (c == 'e' && state != LEADING_DOT) {
+                        state = EXP;
+                    } else {
+                        break scan;
+                    }
+                }
+                case EXP -> {
+                    if (c == '+' || c == '-') {
+                        negExp = c == '-';
+                        state = EXP_SIGN;
+                    } else if (digit >= 0) {
+                        exp = digit;
+                        state = EXP_DIGITS;
+                    } else {
+                        break scan;
+                    }
+                }
+                default -> {
+                    if (digit < 0) {
+                        break scan;
+                    }
+                    exp = Math.min(exp * 10 + digit, MAX_EXP);
+                    state = EXP_DIGITS;
+                }
+            }
+            charReader.read();
         }
 
-        // Read fraction part
-        String frac = readFrac(hasDigits);
-        boolean isFp = frac != null;
-        if (isFp) {
-            tokStr.append(frac);
-        } else if (!hasDigits) {
-            return null;
+        switch (state) {
+            case START:
+                return null;
+            case LEADING_DOT:
+                // A dot that does not start a fraction is left to the OpLexer
+                charReader.reset(start);
+                ++numBacktracks;
+                return null;
+            case EXP:
+                throw charReader.syntaxError(start, "Expected a sequence of digits after 'e'");
+            case EXP_SIGN:
+                throw charReader.syntaxError(start, "Expected a sequence of digits after '" +
+                        (negExp ? '-' : '+') + "'");
         }
+        exp10 += negExp ? -exp : exp;
 
-        // Read optional exponent
-        String exp = readExp();
-        if (exp != null) {
-            tokStr.append(exp);
+        // A number with an exponent that is not whole, such as 15e-1, is a floating-point literal
+        if (isFp || !isWhole(start)) {
+            doubleValue = toDouble(start);
+            return TokenType.FLOAT_LITERAL;
         }
+        longValue = toLong(start);
+        return TokenType.INT_LITERAL;
+    }
 
-        TokenType literalType = (isFp ? TokenType.FLOAT_LITERAL : TokenType.INT_LITERAL);
-        return new Token(tokStr.toString(), literalType, charReader.getCurrLine());
+    /**
+     * Gets the value of the most recent number if it is an integer literal.
+     *
+     * @return a long integer as the value.
+     */
+    long getLongValue() {
+        return longValue;
+    }
+
+    /**
+     * Gets the value of the most recent number if it is a floating-point literal.
+     *
+     * @return a double as the value.
+     */
+    double getDoubleValue() {
+        return doubleValue;
     }
 }
@@ -5,44 +5,115 @@ import tokens.Token;
 import tokens.TokenType;
 
 import java.io.IOException;
+import java.util.ArrayList;
 
 public class OpLexer {
+    // Operators are made of ASCII characters
+    private final static int ALPHABET_SIZE = 128;
     private final CharReader charReader;
-    private final OpTable opTable = OpTable.getInstance();
+    // Trie over the operators, children[node][c] is the node reached from node by c, 0 if there is none
+    private final int[][] children;
+    // Operator id accepted at each node, null if the path to the node is only a prefix of longer operators
+    private final TokenType[] accepts;
+    // Counted for LexerMetrics
+    private long numAttempts = 0;
+    private long numBacktracks = 0;
 
     public OpLexer(CharReader charReader) {
         this.charReader = charReader;
+        OpTable opTable = OpTable.getInstance();
+        ArrayList<int[]> childList = new ArrayList<>();
+        ArrayList<TokenType> acceptList = new ArrayList<>();
+        // Add the root
+        childList.add(new int[ALPHABET_SIZE]);
+        acceptList.add(null);
+        int node;
+        char c;
+        for (String op : opTable.getOps()) {
+            // Word operators are read as words
+            if (charReader.isWordStart(op.charAt(0))) {
+                continue;
+            }
+            node = 0;
+            for (int i = 0; i < op.length(); ++i) {
+                c = op.charAt(i);
+                if (c >= ALPHABET_SIZE) {
+                    throw new IllegalArgumentException("Operator '" + op + "' is not made of ASCII characters");
+                }
+                if (childList.get(node)[c] == 0) {
+                    childList.get(node)[c] = childList.size();
+                    childList.add(new int[ALPHABET_SIZE]);
+                    acceptList.add(null);
+                }
+                node = childList.get(node)[c];
+            }
+            acceptList.set(node, opTable.getId(op));
+        }
+        children = childList.toArray(new int[0][]);
+        accepts = acceptList.toArray(new TokenType[0]);
+    }
+
+    /**
+     * Gets the number of times the lexer has been asked to read a token.
+     *
+     * @return a long integer as the number of attempts.
+     */
+    public long getNumAttempts() {
+        return numAttempts;
+    }
+
+    /**
+     * Gets the number of times the lexer has given characters back to the reader after reading past its token.
+     *
+     * @return a long integer as the number of backtracks.
+     */
+    public long getNumBacktracks() {
+        return numBacktracks;
     }
 
     /**
-     * Reads an operator (can be multiple characters) and creates a token that stores the operator if the operation
-     * succeeds.
+     * Reads the longest operator that starts at the current position and creates a token that stores the operator if
+     * the operation succeeds.
      *
      * @return a token that stores the operator.
      * @throws IOException if the read operation causes an error.
      */
     public Token read() throws IOException {
-        int c;
-        StringBuilder tokStr = new StringBuilder();
-        String tmpStr;
-        TokenType tmpTokType, opId = TokenType.UNKNOWN;
-        boolean end = false;
-
-        while (!charReader.isEos(c = charReader.peek()) && !end) {
-            tmpStr = tokStr.toString() + (char) c;
-            // Find the token type corresponding to the string
-            tmpTokType = opTable.getId(tmpStr);
-            end = tmpTokType == null;
-            if (!end) {
-                tokStr.append((char) c);
-                // Set the operator id
-                opId = tmpTokType;
-                charReader.read();
+        long start = charReader.getOffset();
+        TokenType opId = lex();
+        return opId == null ? null : charReader.newToken(start, opId);
+    }
+
+    /**
+     * Reads the longest operator that starts at the current position without creating a token, the operator spans
+     * from the reader's mark to its current offset.
+     *
+     * @return the operator's token type or null if there is no operator.
+     * @throws IOException if the read operation causes an error.
+     */
+    TokenType lex() throws IOException {
+        ++numAttempts;
+        int c, next;
+        long start = charReader.mark();
+        int node = 0;
+        // Offset right after the longest operator read so far
+        long end = start;
+        TokenType opId = null;
+
+        // Walk down the trie as long as there is a transition for the next character
+        while (!charReader.isEos(c = charReader.peek()) && c < ALPHABET_SIZE && (next = children[node][c]) != 0) {
+            charReader.read();
+            node = next;
+            if (accepts[node] != null) {
+                opId = accepts[node];
+                end = charReader.getOffset();
             }
         }
-        if (tokStr.isEmpty()) {
-            return null;
+        // Back off to the end of the longest operator
+        if (charReader.getOffset() != end) {
+            charReader.reset(end);
+            ++numBacktracks;
         }
-        return new Token(tokStr.toString(), opId, charReader.getCurrLine());
+        return opId;
     }
 }
@@ -0,0 +1,185 @@
+package lexers;
+
+import exceptions.SyntaxError;
+import operators.OpTable;
+import tokens.TokenBuffer;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Lexes a large input by splitting it into chunks that are lexed concurrently on a fork-join pool
+public class ParallelLexer {
+    private final static int DEFAULT_MIN_CHUNK_SIZE = 1 << 16;
+    // Number of chunks per worker thread, more chunks than threads balance out uneven chunks
+    private final static int CHUNKS_PER_THREAD = 4;
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+    // Whether a chunk can start right after a ';', which is the case if no operator longer than ';' starts with it
+    private final boolean splitAtSemicolon;
+
+    // Tokens of a chunk and the number of newlines in it, or the syntax error that stopped the chunk from being lexed
+    private record Chunk(TokenBuffer toks, int numNewlines, SyntaxError error) {
+    }
+
+    public ParallelLexer(ForkJoinPool pool, int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+        splitAtSemicolon = canSplitAtSemicolon();
+    }
+
+    public ParallelLexer(ForkJoinPool pool) {
+        this(pool, DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks if a chunk can start right after a ';', which is the case if no operator longer than ';' starts with it.
+     *
+     * @return true if a chunk can start after a ';' and false otherwise.
+     */
+    static boolean canSplitAtSemicolon() {
+        return OpTable.getInstance().getOps().stream().noneMatch(op -> op.length() > 1 && op.charAt(0) == ';');
+    }
+
+    /**
+     * Finds where the line of an offset starts by scanning back to the newline before it, so that a chunk that starts
+     * right after a ';' counts columns from the start of the line.
+     *
+     * @param input  the input.
+     * @param offset the offset.
+     * @return the offset right after the previous newline or 0 if there is none.
+     */
+    static int findLineStart(CharSequence input, int offset) {
+        while (offset > 0 && input.charAt(offset - 1) != '\n') {
+            --offset;
+        }
+        return offset;
+    }
+
+    /**
+     * Checks if a chunk can start right after the character. No token spans a newline, so a chunk can always start on
+     * a new line.
+     *
+     * @param c                the character to be checked.
+     * @param splitAtSemicolon whether a chunk can start right after a ';'.
+     * @return true if a chunk can start after the character and false otherwise.
+     */
+    static boolean isBoundary(char c, boolean splitAtSemicolon) {
+        return c == '\n' || (c == ';' && splitAtSemicolon);
+    }
+
+    /**
+     * Splits the input into chunks of roughly equal size that start right after a boundary character.
+     *
+     * @param input the input to be split.
+     * @return the offsets where the chunks start followed by the length of the input.
+     */
+    private List<Integer> split(CharSequence input) {
+        int len = input.length();
+        int numChunks = Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, len / minChunkSize));
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int bound;
+        for (int i = 1; i < numChunks; ++i) {
+            bound = Math.max((int) ((long) i * len / numChunks), bounds.get(bounds.size() - 1));
+            while (bound < len && !isBoundary(input.charAt(bound), splitAtSemicolon)) {
+                ++bound;
+            }
+            if (bound + 1 >= len) {
+                break;
+            }
+            if (bound + 1 > bounds.get(bounds.size() - 1)) {
+                bounds.add(bound + 1);
+            }
+        }
+        bounds.add(len);
+        return bounds;
+    }
+
+    /**
+     * Lexes a chunk of the input.
+     *
+     * @param input the input.
+     * @param start the offset where the chunk starts.
+     * @param end   the offset where the chunk ends(exclusive).
+     * @return the chunk's tokens, including EOF, with offsets and line numbers relative to the chunk.
+     */
+    private static Chunk lexChunk(CharSequence input, int start, int end) {
+        CharSequence chunkInput = input.subSequence(start, end);
+        TokenBuffer toks = new TokenBuffer(chunkInput);
+        Lexer lexer = new Lexer(new CharSequenceReader(input, start, end));
+        try {
+            lexer.lexInto(toks);
+        } catch (SyntaxError e) {
+            return new Chunk(null, 0, e);
+        } catch (IOException e) {
+            // Reading from a string never fails
+            throw new UncheckedIOException(e);
+        }
+        // Every character has been read, so the current line tells how many newlines there are
+        return new Chunk(toks, lexer.getCurrLine() - 1, null);
+    }
+
+    /**
+     * Lexes a whole input into a token buffer, the result is the same as Lexer.lexAll().
+     *
+     * @param input the input to be lexed.
+     * @return a TokenBuffer object that stores every token in the input.
+     * @throws SyntaxError if there is a syntax error, it is the first error the sequential lexer would report.
+     */
+    public TokenBuffer lexAll(CharSequence input) throws SyntaxError {
+        List<Integer> bounds = split(input);
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); ++i) {
+            int start = bounds.get(i), end = bounds.get(i + 1);
+            tasks.add(() -> lexChunk(input, start, end));
+        }
+        List<Future<Chunk>> futures = pool.invokeAll(tasks);
+
+        // Stitch the chunks back together in order
+        TokenBuffer toks = new TokenBuffer(input);
+        TokenBuffer chunkToks = null;
+        int lineShift = 0;
+        Chunk chunk;
+        for (int i = 0; i < futures.size(); ++i) {
+            try {
+                chunk = futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to lex a chunk", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while lexing", e);
+            }
+            if (chunk.error() != null) {
+                // Every chunk before this one has been lexed, so this is the first error in the input, its column is
+                // relative to the chunk on the chunk's first line
+                SyntaxError e = chunk.error();
+                int chunkStart = bounds.get(i);
+                int column = e.getLine() > 1 ? e.getColumn() :
+                        e.getColumn() + chunkStart - findLineStart(input, chunkStart);
+                throw new SyntaxError(e.getMsg(), e.getLine() + lineShift, column);
+            }
+            chunkToks = chunk.toks();
+            // Leave out the chunk's EOF
+            toks.addAll(chunkToks, 0, chunkToks.size() - 1, bounds.get(i), lineShift);
+            lineShift += chunk.numNewlines();
+        }
+        assert chunkToks != null && chunkToks.getType(chunkToks.size() - 1) == TokenType.EOF;
+        // Keep the last chunk's EOF
+        toks.addAll(chunkToks, chunkToks.size() - 1, chunkToks.size(), bounds.get(bounds.size() - 2), 0);
+        return toks;
+    }
+}
@@ -0,0 +1,42 @@
+package lexers;
+
+// Scans one character at a time with the ASCII class table of the CharReader, for JVMs without the Vector API and for
+// the ends of windows that are too short for a vector
+final class ScalarCharScanner implements CharScanner {
+    final static ScalarCharScanner INSTANCE = new ScalarCharScanner();
+
+    private ScalarCharScanner() {
+    }
+
+    @Override
+    public int skipSpaces(char[] buff, int pos, int lim) {
+        while (pos < lim && CharReader.isAsciiIn(buff[pos], CharReader.SPACE)) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    @Override
+    public int skipWordChars(char[] buff, int pos, int lim) {
+        while (pos < lim && CharReader.isAsciiIn(buff[pos], CharReader.WORD_START | CharReader.DIGIT)) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    @Override
+    public int skipDigits(char[] buff, int pos, int lim) {
+        while (pos < lim && CharReader.isAsciiIn(buff[pos], CharReader.DIGIT)) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    @Override
+    public int findNewline(char[] buff, int pos, int lim) {
+        while (pos < lim && buff[pos] != '\n') {
+            ++pos;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,20 @@
+package lexers;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// A JDK Flight Recorder event with the number of tokens of one type in a lex session, committed when the session ends
+@Name("microlexer.TokenCount")
+@Label("Token Count")
+@Category("Microlexer")
+@Description("Number of tokens of one type in a lex session")
+class TokenCountEvent extends jdk.jfr.Event {
+    @Label("Session Id")
+    long sessionId;
+    @Label("Token Type")
+    String tokenType;
+    @Label("Count")
+    long count;
+}
@@ -0,0 +1,160 @@
+package lexers;
+
+import exceptions.SyntaxError;
+import tokens.Token;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Publishes the tokens of a stream to a subscriber, lexing only as many tokens as the subscriber has requested
+// Tokens are lexed and delivered on an executor, and the stream is closed once the subscription ends
+public class TokenPublisher implements Flow.Publisher<Token> {
+    private final Reader reader;
+    private final Executor executor;
+    // The stream can only be lexed once, so there can only be one subscriber
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    public TokenPublisher(Reader reader, Executor executor) {
+        this.reader = reader;
+        this.executor = executor;
+    }
+
+    public TokenPublisher(Reader reader) {
+        this(reader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Subscribes to the tokens of the stream. Every token except EOF is passed to onNext, reaching EOF completes the
+     * subscription, and a SyntaxError or an IOException is passed to onError.
+     *
+     * @param subscriber the subscriber.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Token> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A token publisher can only have one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new TokenSubscription(subscriber));
+    }
+
+    // Lexes tokens on demand, at most one drain runs at a time and signals are only sent from it
+    private class TokenSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Token> subscriber;
+        private final Lexer lexer = new Lexer(reader);
+        // Number of tokens requested but not delivered yet, Long.MAX_VALUE means unbounded
+        private final AtomicLong demand = new AtomicLong(0);
+        // Number of times a drain has been asked for while one may be running
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private volatile boolean cancelled = false;
+        // Set if the subscriber has requested a non-positive number of tokens
+        private volatile IllegalArgumentException badRequest;
+        // Only accessed by the drain
+        private boolean done = false;
+
+        private TokenSubscription(Flow.Subscriber<? super Token> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("Requested " + n + " tokens, the number must be positive");
+            } else {
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            // The drain closes the stream, it may be in the middle of reading it
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Lexes and delivers tokens as long as there is demand, then checks if it has been asked for again in the
+         * meantime.
+         */
+        private void drain() {
+            int missed = 1;
+            Token tok;
+            do {
+                while (!done) {
+                    if (cancelled) {
+                        finish();
+                        break;
+                    }
+                    if (badRequest != null) {
+                        finish();
+                        subscriber.onError(badRequest);
+                        break;
+                    }
+                    if (demand.get() == 0) {
+                        break;
+                    }
+                    try {
+                        tok = lexer.consume();
+                    } catch (SyntaxError | IOException e) {
+                        finish();
+                        if (!cancelled) {
+                            subscriber.onError(e);
+                        }
+                        break;
+                    }
+                    if (tok.getType() == TokenType.EOF) {
+                        finish();
+                        subscriber.onComplete();
+                        break;
+                    }
+                    demand.getAndUpdate(d -> d == Long.MAX_VALUE ? d : d - 1);
+                    try {
+                        subscriber.onNext(tok);
+                    } catch (RuntimeException e) {
+                        // A subscriber that throws is treated as if it had cancelled
+                        finish();
+                        throw e;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Ends the subscription and closes the stream.
+         */
+        private void finish() {
+            done = true;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Nothing is read from the stream anymore
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package lexers;
+
+import exceptions.SyntaxError;
+import exceptions.UncheckedSyntaxError;
+import symbols.SymbolPool;
+import tokens.Token;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Lexes a range of an input that can be split at boundaries where lexing starts over, so that parallel streams lex the
+// parts of the input on different threads, the subclasses pick the boundaries and read their range of the input
+abstract class TokenSpliterator implements Spliterator<Token> {
+    // Ranges shorter than this are not split, lexing them is cheaper than handing them to another thread
+    final static int MIN_SPLIT_SIZE = 1 << 14;
+    // Shared by every split of the input and locked while it is used, ids are interned in it so that the same
+    // identifier has the same symbol id whichever split lexes it
+    final SymbolPool symbolPool;
+    // Shared symbol id plus one and canonical string of each id in this split's own pool, 0 if it has not been
+    // interned in the shared pool yet
+    private int[] sharedIds = new int[0];
+    private String[] sharedNames = new String[0];
+    // Created when the first token is read, after which the range can no longer be split
+    private Lexer lexer;
+    private boolean done = false;
+
+    TokenSpliterator(SymbolPool symbolPool) {
+        this.symbolPool = symbolPool;
+    }
+
+    /**
+     * Creates the lexer over the range, which is only done once the first token is read.
+     *
+     * @return a Lexer object whose tokens carry their offsets and line numbers in the whole input.
+     * @throws IOException if the range cannot be opened.
+     */
+    abstract Lexer newLexer() throws IOException;
+
+    /**
+     * Gets the size of the range that is left.
+     *
+     * @return a long integer as the number of characters or bytes left in the range.
+     */
+    abstract long getRangeSize();
+
+    /**
+     * Checks if the first token has been read, after which the range can no longer be split.
+     *
+     * @return true if the lexer has been created and false otherwise.
+     */
+    boolean isStarted() {
+        return lexer != null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Token> action) {
+        if (done) {
+            return false;
+        }
+        Token tok;
+        try {
+            if (lexer == null) {
+                lexer = newLexer();
+            }
+            tok = lexer.consume();
+        } catch (SyntaxError e) {
+            done = true;
+            throw new UncheckedSyntaxError(e);
+        } catch (IOException e) {
+            done = true;
+            throw new UncheckedIOException(e);
+        }
+        if (tok.getType() == TokenType.EOF) {
+            done = true;
+            return false;
+        }
+        if (tok.getSymbolId() >= 0) {
+            shareSymbol(tok);
+        }
+        action.accept(tok);
+        return true;
+    }
+
+    /**
+     * Replaces the symbol id of an id token in the split's own pool with its id in the shared pool. The shared pool is
+     * only locked the first time the split reads each identifier, so splits rarely wait for each other.
+     *
+     * @param tok an id token read by the split's lexer.
+     */
+    private void shareSymbol(Token tok) {
+        int localId = tok.getSymbolId();
+        if (localId >= sharedIds.length) {
+            int capacity = Math.max(localId + 1, sharedIds.length * 2);
+            sharedIds = Arrays.copyOf(sharedIds, capacity);
+            sharedNames = Arrays.copyOf(sharedNames, capacity);
+        }
+        if (sharedIds[localId] == 0) {
+            int sharedId;
+            String name;
+            synchronized (symbolPool) {
+                sharedId = symbolPool.intern(tok.getValue());
+                name = symbolPool.getName(sharedId);
+            }
+            sharedIds[localId] = sharedId + 1;
+            sharedNames[localId] = name;
+        }
+        tok.setSymbol(sharedIds[localId] - 1, sharedNames[localId]);
+    }
+
+    /**
+     * Estimates the number of tokens left by the size of the range that is left, which is an upper bound. The exact
+     * number is only known once the range has been lexed, so the spliterator is not SIZED.
+     *
+     * @return the number of characters or bytes left in the range.
+     */
+    @Override
+    public long estimateSize() {
+        return done ? 0 : getRangeSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,109 @@
+package lexers;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Scans 16 characters, or 32 bytes, per step with the incubating Vector API, and leaves the rest of a window that is
+// shorter than a vector to the ScalarCharScanner
+// Characters are compared as shorts, so a character outside ASCII is never in a class and ends the run
+// This class is only loaded if the jdk.incubator.vector module is resolved, see CharReader.setVectorScanning()
+final class VectorCharScanner implements CharScanner {
+    // Wider vectors waste most of their lanes on the runs in typical sources
+    private final static VectorSpecies<Short> SPECIES = ShortVector.SPECIES_256;
+    // Most runs are a single space or a short word, which the scalar scanner finds before a vector could be loaded, so
+    // vectors are only used once a run is longer than this
+    private final static int SCALAR_PREFIX = 8;
+    final static VectorCharScanner INSTANCE = new VectorCharScanner();
+
+    private VectorCharScanner() {
+    }
+
+    /**
+     * Checks if the platform has vectors of 256 bits, without which the Vector API falls back to slow Java code.
+     *
+     * @return true if vector scanning is faster than scalar scanning and false otherwise.
+     */
+    static boolean isFast() {
+        return ShortVector.SPECIES_PREFERRED.vectorBitSize() >= SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public int skipSpaces(char[] buff, int pos, int lim) {
+        int end = ScalarCharScanner.INSTANCE.skipSpaces(buff, pos, Math.min(lim, pos + SCALAR_PREFIX));
+        return end != pos + SCALAR_PREFIX ? end : skipSpaceVectors(buff, end, lim);
+    }
+
+    @Override
+    public int skipWordChars(char[] buff, int pos, int lim) {
+        int end = ScalarCharScanner.INSTANCE.skipWordChars(buff, pos, Math.min(lim, pos + SCALAR_PREFIX));
+        return end != pos + SCALAR_PREFIX ? end : skipWordCharVectors(buff, end, lim);
+    }
+
+    @Override
+    public int skipDigits(char[] buff, int pos, int lim) {
+        int end = ScalarCharScanner.INSTANCE.skipDigits(buff, pos, Math.min(lim, pos + SCALAR_PREFIX));
+        return end != pos + SCALAR_PREFIX ? end : skipDigitVectors(buff, end, lim);
+    }
+
+    // Newlines are far apart, so vectors are used from the start
+    @Override
+    public int findNewline(char[] buff, int pos, int lim) {
+        for (int bound = pos + SPECIES.loopBound(lim - pos); pos < bound; pos += SPECIES.length()) {
+            VectorMask<Short> newlines = ShortVector.fromCharArray(SPECIES, buff, pos)
+                    .compare(VectorOperators.EQ, (short) '\n');
+            if (newlines.anyTrue()) {
+                return pos + newlines.firstTrue();
+            }
+        }
+        return ScalarCharScanner.INSTANCE.findNewline(buff, pos, lim);
+    }
+
+    // The vector loops are kept out of the methods above, so that those stay small enough to be inlined for the short
+    // runs that never reach a vector
+
+    private static int skipSpaceVectors(char[] buff, int pos, int lim) {
+        for (int bound = pos + SPECIES.loopBound(lim - pos); pos < bound; pos += SPECIES.length()) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, buff, pos);
+            // '\t', '\n', '\u000B', '\f', '\r', the separators 0x1C-0x1F and ' '
+            VectorMask<Short> stop = inRange(v, '\t', '\r').or(inRange(v, '\u001C', ' ')).not();
+            if (stop.anyTrue()) {
+                return pos + stop.firstTrue();
+            }
+        }
+        return ScalarCharScanner.INSTANCE.skipSpaces(buff, pos, lim);
+    }
+
+    private static int skipWordCharVectors(char[] buff, int pos, int lim) {
+        for (int bound = pos + SPECIES.loopBound(lim - pos); pos < bound; pos += SPECIES.length()) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, buff, pos);
+            // Setting bit 5 maps upper case letters onto lower case ones and no other character onto a letter
+            VectorMask<Short> stop = inRange(v.or((short) 0x20), 'a', 'z').or(inRange(v, '0', '9'))
+                    .or(v.compare(VectorOperators.EQ, (short) '_')).not();
+            if (stop.anyTrue()) {
+                return pos + stop.firstTrue();
+            }
+        }
+        return ScalarCharScanner.INSTANCE.skipWordChars(buff, pos, lim);
+    }
+
+    private static int skipDigitVectors(char[] buff, int pos, int lim) {
+        for (int bound = pos + SPECIES.loopBound(lim - pos); pos < bound; pos += SPECIES.length()) {
+            VectorMask<Short> stop = inRange(ShortVector.fromCharArray(SPECIES, buff, pos), '0', '9').not();
+            if (stop.anyTrue()) {
+                return pos + stop.firstTrue();
+            }
+        }
+        return ScalarCharScanner.INSTANCE.skipDigits(buff, pos, lim);
+    }
+
+    /**
+     * Compares every lane of a vector with an ASCII range, characters outside ASCII are negative shorts or above it.
+     *
+     * @return a mask of the lanes in the range.
+     */
+    private static VectorMask<Short> inRange(ShortVector v, char first, char last) {
+        return v.compare(VectorOperators.GE, (short) first).and(v.compare(VectorOperators.LE, (short) last));
+    }
+}
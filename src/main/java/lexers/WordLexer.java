@@ -0,0 +1,99 @@
+package lexers;
+
+import exceptions.SyntaxError;
+import keywords.KeywordTable;
+import operators.OpTable;
+import symbols.SymbolPool;
+import tokens.Token;
+import tokens.TokenType;
+import types.TypeTable;
+
+import java.io.IOException;
+
+public class WordLexer extends AlnumUnderscoreLexer {
+    private final SymbolPool symbolPool;
+    // Maps the symbol ids of keywords, data types and word operators to their token types so that a word is classified
+    // with a single lookup, null entries are ids
+    private final TokenType[] wordTypes;
+    // Symbol id of the most recent word
+    private int symbolId;
+
+    public WordLexer(CharReader charReader, SymbolPool symbolPool) {
+        super(charReader);
+        this.symbolPool = symbolPool;
+        TypeTable typeTable = TypeTable.getInstance();
+        KeywordTable keywordTable = KeywordTable.getInstance();
+        OpTable opTable = OpTable.getInstance();
+        // Intern every keyword, data type and word operator so that words are classified by their symbol ids
+        for (String op : opTable.getOps()) {
+            if (charReader.isWordStart(op.charAt(0))) {
+                symbolPool.intern(op);
+            }
+        }
+        for (String typeId : typeTable.getTypeIds()) {
+            symbolPool.intern(typeId);
+        }
+        for (String kw : keywordTable.getKeywords()) {
+            symbolPool.intern(kw);
+        }
+        wordTypes = new TokenType[symbolPool.size()];
+        for (String op : opTable.getOps()) {
+            if (charReader.isWordStart(op.charAt(0))) {
+                wordTypes[symbolPool.intern(op)] = opTable.getId(op);
+            }
+        }
+        for (String typeId : typeTable.getTypeIds()) {
+            wordTypes[symbolPool.intern(typeId)] = TokenType.TYPE_ID;
+        }
+        // Keywords take precedence over data types
+        for (String kw : keywordTable.getKeywords()) {
+            wordTypes[symbolPool.intern(kw)] = keywordTable.getId(kw);
+        }
+    }
+
+    /**
+     * Reads a word containing only alphanumerics and underscores and classifies it as a keyword, a data type, a word
+     * operator such as 'as' or an id. Ids are interned in the symbol pool.
+     *
+     * @return a token that stores the word.
+     * @throws IOException if the read operation causes an error.
+     * @throws SyntaxError if there is a syntax error.
+     */
+    @Override
+    public Token read() throws IOException, SyntaxError {
+        Token tok = super.read();
+        if (tok != null && tok.getType() == TokenType.ID) {
+            tok.setSymbol(symbolId, symbolPool.getName(symbolId));
+        }
+        return tok;
+    }
+
+    /**
+     * Reads a word without creating a token and classifies it like read(), the id of an interned id is kept for
+     * getSymbolId().
+     *
+     * @return the word's token type or null if there is no word.
+     * @throws IOException if the read operation causes an error.
+     * @throws SyntaxError if there is a syntax error.
+     */
+    @Override
+    TokenType lex() throws IOException, SyntaxError {
+        long start = charReader.getOffset();
+        // Use the super class to read an alphanumeric-underscore word
+        if (super.lex() == null) {
+            return null;
+        }
+        symbolId = charReader.intern(symbolPool, start);
+        TokenType wordId = symbolId < wordTypes.length ? wordTypes[symbolId] : null;
+        return wordId != null ? wordId : TokenType.ID;
+    }
+
+    /**
+     * Gets the symbol id of the most recent word.
+     *
+     * @return an integer as the symbol id.
+     */
+    int getSymbolId() {
+        return symbolId;
+    }
+}
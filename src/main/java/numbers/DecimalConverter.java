@@ -0,0 +1,141 @@
+package numbers;
+
+import java.math.BigInteger;
+
+// Converts decimal significands and exponents to doubles without going through a string
+// Exact cases are handled with a single floating-point operation, the rest with the Eisel-Lemire algorithm, which
+// multiplies the significand by a 128-bit approximation of a power of five and is always correctly rounded for
+// significands of up to 19 digits
+public class DecimalConverter {
+    private final static int MANTISSA_EXPLICIT_BITS = 52;
+    private final static int MIN_EXPONENT = -1023;
+    private final static int INFINITE_POWER = 0x7FF;
+    private final static int MIN_EXPONENT_ROUND_TO_EVEN = -4;
+    private final static int MAX_EXPONENT_ROUND_TO_EVEN = 23;
+    // Below this power of ten, every 19-digit significand rounds to 0, above the other one, to infinity
+    private final static int SMALLEST_POWER_OF_TEN = -342;
+    private final static int LARGEST_POWER_OF_TEN = 308;
+    // Powers of ten that are exactly representable as doubles
+    private final static double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+            1e19, 1e20, 1e21, 1e22
+    };
+    // The 128 most significant bits of 5^q for q from SMALLEST_POWER_OF_TEN to LARGEST_POWER_OF_TEN, the high half of
+    // each at an even index followed by the low half, 5^q is rounded up for negative q
+    private final static long[] POWERS_OF_FIVE = computePowersOfFive();
+
+    private DecimalConverter() {
+    }
+
+    /**
+     * Computes the table of powers of five.
+     *
+     * @return the 128-bit powers of five as pairs of longs.
+     */
+    private static long[] computePowersOfFive() {
+        long[] powers = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+        BigInteger five = BigInteger.valueOf(5);
+        BigInteger power, bits;
+        int i = 0;
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; ++q) {
+            if (q < 0) {
+                // Scale the reciprocal up to 128 bits, or more if it is truncated below, and round it up
+                power = five.pow(-q);
+                int z = power.bitLength();
+                bits = BigInteger.ONE.shiftLeft(q >= -27 ? z + 127 : 2 * z + 128).divide(power).add(BigInteger.ONE);
+            } else {
+                bits = five.pow(q);
+            }
+            // Keep the 128 most significant bits
+            bits = bits.bitLength() > 128 ? bits.shiftRight(bits.bitLength() - 128) :
+                    bits.shiftLeft(128 - bits.bitLength());
+            powers[i++] = bits.shiftRight(64).longValue();
+            powers[i++] = bits.longValue();
+        }
+        return powers;
+    }
+
+    /**
+     * Converts w * 10^q to the nearest double.
+     *
+     * @param w the significand, interpreted as an unsigned integer of at most 19 decimal digits.
+     * @param q the power of ten.
+     * @return the nearest double, which is infinite if the number is too large.
+     */
+    public static double toDouble(long w, int q) {
+        // If both the significand and the power of ten are exact doubles, a single operation rounds correctly
+        if (w >= 0 && w <= (1L << 53) && q >= -22 && q <= 22) {
+            return q >= 0 ? w * EXACT_POWERS_OF_TEN[q] : w / EXACT_POWERS_OF_TEN[-q];
+        }
+        return Double.longBitsToDouble(eiselLemire(w, q));
+    }
+
+    /**
+     * Converts w * 10^q to the bits of the nearest double with the Eisel-Lemire algorithm.
+     *
+     * @param w the significand, interpreted as an unsigned integer of at most 19 decimal digits.
+     * @param q the power of ten.
+     * @return the bits of the nearest double.
+     */
+    private static long eiselLemire(long w, int q) {
+        if (w == 0 || q < SMALLEST_POWER_OF_TEN) {
+            return 0;
+        }
+        if (q > LARGEST_POWER_OF_TEN) {
+            return (long) INFINITE_POWER << MANTISSA_EXPLICIT_BITS;
+        }
+        // Normalize the significand so that its most significant bit is set
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        // Multiply by the high half of the power of five, and by the low half too if the product is too close to a
+        // rounding boundary to tell which way it rounds
+        int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+        long high = Math.unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        long precisionMask = -1L >>> (MANTISSA_EXPLICIT_BITS + 3);
+        if ((high & precisionMask) == precisionMask) {
+            long secondHigh = Math.unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0) {
+                ++high;
+            }
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_EXPLICIT_BITS - 3;
+        long mantissa = high >>> shift;
+        // The binary exponent of 10^q is about q * log2(10), computed with fixed-point arithmetic
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz - MIN_EXPONENT;
+        if (power2 <= 0) {
+            // A subnormal number
+            if (-power2 + 1 >= 64) {
+                return 0;
+            }
+            mantissa >>>= -power2 + 1;
+            // Round half up, then drop the extra bit
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            // Rounding up may have made the number normal
+            power2 = mantissa < (1L << MANTISSA_EXPLICIT_BITS) ? 0 : 1;
+            return ((long) power2 << MANTISSA_EXPLICIT_BITS) | (mantissa & ~(1L << MANTISSA_EXPLICIT_BITS));
+        }
+        // Numbers exactly halfway between two doubles are only possible for small powers, they round to even
+        if (Long.compareUnsigned(low, 1) <= 0 && q >= MIN_EXPONENT_ROUND_TO_EVEN && q <= MAX_EXPONENT_ROUND_TO_EVEN &&
+                (mantissa & 3) == 1 && (mantissa << shift) == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (Long.compareUnsigned(mantissa, 2L << MANTISSA_EXPLICIT_BITS) >= 0) {
+            // Rounding up carried into a new bit
+            mantissa = 1L << MANTISSA_EXPLICIT_BITS;
+            ++power2;
+        }
+        mantissa &= ~(1L << MANTISSA_EXPLICIT_BITS);
+        if (power2 >= INFINITE_POWER) {
+            return (long) INFINITE_POWER << MANTISSA_EXPLICIT_BITS;
+        }
+        return ((long) power2 << MANTISSA_EXPLICIT_BITS) | mantissa;
+    }
+}
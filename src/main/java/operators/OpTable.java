@@ -1,14 +1,19 @@
 package operators;
 
+import tables.PerfectHashTable;
 import tokens.TokenType;
 import types.TypeInfo;
 import types.TypeTable;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Set;
 
 public class OpTable {
     private final HashMap<String, TokenType> opMap = new HashMap<>();
+    // Perfect hash compiled from the operator map
+    private PerfectHashTable<TokenType> opLookup;
     private final HashSet<TokenType> prefixSet = new HashSet<>();
     private final HashSet<TokenType> infixSet = new HashSet<>();
     private final HashSet<TokenType> postfixSet = new HashSet<>();
@@ -21,17 +26,19 @@ public class OpTable {
     // If they are, it finds the data type of the result after applying the operator
     private final HashMap<OpCompat, TypeInfo> compatMap = new HashMap<>();
     private final static OpTable INSTANCE = new OpTable();
+    // Only read and written while holding the class lock in getInstance()
     private static boolean init = false;
 
     private OpTable() {
     }
 
     /**
-     * Initializes the only instance of OpTable if it has not been initialized and then returns it.
+     * Initializes the only instance of OpTable if it has not been initialized and then returns it. Initialization is
+     * synchronized, so the instance is fully built before any thread can see it and can be shared across threads.
      *
      * @return an OpTable object.
      */
-    public static OpTable getInstance() {
+    public static synchronized OpTable getInstance() {
         if (!init) {
             // Add operators to table
             INSTANCE.opMap.put("+", TokenType.ADD);
@@ -48,6 +55,7 @@ public class OpTable {
             INSTANCE.opMap.put("{", TokenType.LBRACKETS);
             INSTANCE.opMap.put("}", TokenType.RBRACKETS);
             INSTANCE.opMap.put(";", TokenType.SEMICOLON);
+            INSTANCE.opLookup = new PerfectHashTable<>(INSTANCE.opMap);
 
             // Initialize prefix table
             INSTANCE.prefixSet.add(TokenType.ADD);
@@ -123,7 +131,28 @@ public class OpTable {
      * @return a TokenType object as the operator's id if it exists, otherwise, return null.
      */
     public TokenType getId(String opStr) {
-        return opMap.get(opStr);
+        return opLookup.get(opStr);
+    }
+
+    /**
+     * Gets the operator's id associated with a range of characters without creating a string.
+     *
+     * @param buf the characters of the operator.
+     * @param off the index of the first character.
+     * @param len the number of characters.
+     * @return a TokenType object as the operator's id if it exists, otherwise, return null.
+     */
+    public TokenType getId(char[] buf, int off, int len) {
+        return opLookup.get(buf, off, len);
+    }
+
+    /**
+     * Gets all the operators in the table.
+     *
+     * @return a read-only set of operator strings.
+     */
+    public Set<String> getOps() {
+        return Collections.unmodifiableSet(opMap.keySet());
     }
 
     /**
@@ -0,0 +1,137 @@
+package symbols;
+
+import java.util.Arrays;
+
+// Interns identifiers as dense integer ids and canonical strings, ids are given out from 0 in order of first appearance
+// The pool can be shared between lexers but is not thread-safe
+public class SymbolPool {
+    private final static int INIT_CAPACITY = 64;
+    // Canonical string of each symbol indexed by id
+    private String[] names = new String[INIT_CAPACITY];
+    // Hash of each symbol indexed by id
+    private int[] hashes = new int[INIT_CAPACITY];
+    // Open-addressing table of symbol ids plus one, 0 marks an empty slot
+    private int[] slots = new int[INIT_CAPACITY * 2];
+    private int size = 0;
+
+    /**
+     * Computes the same hash as String.hashCode() over a range of characters.
+     *
+     * @param buf the characters.
+     * @param off the index of the first character.
+     * @param len the number of characters.
+     * @return the hash of the characters.
+     */
+    private static int hash(char[] buf, int off, int len) {
+        int h = 0;
+        for (int i = off; i < off + len; ++i) {
+            h = 31 * h + buf[i];
+        }
+        return h;
+    }
+
+    /**
+     * Finds the slot where a symbol is stored or the empty slot where it should be stored.
+     *
+     * @param hash the hash of the symbol.
+     * @param buf  the characters of the symbol.
+     * @param off  the index of the first character.
+     * @param len  the number of characters.
+     * @return the index of the slot.
+     */
+    private int findSlot(int hash, char[] buf, int off, int len) {
+        int mask = slots.length - 1;
+        // Spread the high bits since the table index only uses the low ones
+        int i = (hash ^ (hash >>> 16)) & mask;
+        int id;
+        while ((id = slots[i] - 1) >= 0) {
+            if (hashes[id] == hash && names[id].length() == len && matches(names[id], buf, off)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static boolean matches(String name, char[] buf, int off) {
+        for (int i = 0; i < name.length(); ++i) {
+            if (name.charAt(i) != buf[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the table and reinserts every symbol.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        int i;
+        for (int id = 0; id < size; ++id) {
+            i = (hashes[id] ^ (hashes[id] >>> 16)) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+
+    /**
+     * Gets the id of a symbol straight from a range of characters, adding the symbol to the pool if it is new. A
+     * string is only created the first time a symbol is seen.
+     *
+     * @param buf the characters of the symbol.
+     * @param off the index of the first character.
+     * @param len the number of characters.
+     * @return the symbol's id.
+     */
+    public int intern(char[] buf, int off, int len) {
+        int hash = hash(buf, off, len);
+        int slot = findSlot(hash, buf, off, len);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = new String(buf, off, len);
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        // Keep the load factor at most 1/2
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Gets the id of a symbol, adding the symbol to the pool if it is new.
+     *
+     * @param name the symbol's name.
+     * @return the symbol's id.
+     */
+    public int intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    /**
+     * Gets the canonical string of a symbol.
+     *
+     * @param id the symbol's id.
+     * @return the string shared by every occurrence of the symbol.
+     */
+    public String getName(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Symbol id " + id + " out of bounds for size " + size);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,157 @@
+package tables;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// Lookup table over a fixed set of strings compiled into a perfect hash, so a lookup hashes the key once and compares
+// it against at most one candidate
+public class PerfectHashTable<V> {
+    // Number of seeds tried for each table size before the table is doubled
+    private final static int MAX_TRIES = 1 << 12;
+    // Number of times the table may be doubled beyond the smallest size that fits every key
+    private final static int MAX_EXTRA_BITS = 3;
+    private final static int GOLDEN_RATIO = 0x9E3779B9;
+    private final static int FNV_PRIME = 0x01000193;
+    private String[] keys;
+    private Object[] values;
+    private int seed;
+    private int shift;
+
+    /**
+     * Compiles a map into a perfect hash, trying seeds until every key gets a slot of its own.
+     *
+     * @param map the keys and values to be stored.
+     * @throws IllegalArgumentException if no seed separates the keys, which only happens for adversarial keys.
+     */
+    public PerfectHashTable(Map<String, ? extends V> map) throws IllegalArgumentException {
+        int minBits = 1;
+        while ((1 << minBits) < map.size()) {
+            ++minBits;
+        }
+        for (int bits = minBits; bits <= minBits + MAX_EXTRA_BITS; ++bits) {
+            if (compile(map, bits)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Cannot compile a perfect hash for " + map.size() + " keys");
+    }
+
+    /**
+     * Hashes the characters of a key with a seed. Unlike String.hashCode(), keys that collide for one seed, such as
+     * "Aa" and "BB", are separated by another.
+     *
+     * @param seed the seed.
+     * @param key  the key.
+     * @return the hash.
+     */
+    private static int hash(int seed, String key) {
+        int h = seed;
+        for (int i = 0; i < key.length(); ++i) {
+            h = (h ^ key.charAt(i)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Hashes a range of characters with a seed, the same way as hash(int, String).
+     *
+     * @param seed the seed.
+     * @param buf  the characters of the key.
+     * @param off  the index of the first character.
+     * @param len  the number of characters.
+     * @return the hash.
+     */
+    private static int hash(int seed, char[] buf, int off, int len) {
+        int h = seed;
+        for (int i = off; i < off + len; ++i) {
+            h = (h ^ buf[i]) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Spreads the bits of a hash into its high bits, which pick the slot.
+     *
+     * @param h the hash.
+     * @return the mixed hash.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * Tries to find a seed that maps every key to a distinct slot in a table of the given size.
+     *
+     * @param map  the keys and values to be stored.
+     * @param bits the log2 of the table size.
+     * @return true if a seed has been found and false otherwise.
+     */
+    private boolean compile(Map<String, ? extends V> map, int bits) {
+        String[] tmpKeys = new String[1 << bits];
+        Object[] tmpValues = new Object[1 << bits];
+        int tmpShift = 32 - bits;
+        int tmpSeed;
+        int slot;
+        boolean collision;
+        for (int i = 0; i < MAX_TRIES; ++i) {
+            tmpSeed = (i + 1) * GOLDEN_RATIO;
+            collision = false;
+            for (Map.Entry<String, ? extends V> entry : map.entrySet()) {
+                slot = hash(tmpSeed, entry.getKey()) >>> tmpShift;
+                if (tmpKeys[slot] != null) {
+                    collision = true;
+                    break;
+                }
+                tmpKeys[slot] = entry.getKey();
+                tmpValues[slot] = entry.getValue();
+            }
+            if (!collision) {
+                keys = tmpKeys;
+                values = tmpValues;
+                seed = tmpSeed;
+                shift = tmpShift;
+                return true;
+            }
+            Arrays.fill(tmpKeys, null);
+            Arrays.fill(tmpValues, null);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the value associated with a range of characters without creating a string.
+     *
+     * @param buf the characters of the key.
+     * @param off the index of the first character.
+     * @param len the number of characters.
+     * @return the value associated with the key if it exists, otherwise, return null.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(char[] buf, int off, int len) {
+        int slot = hash(seed, buf, off, len) >>> shift;
+        String key = keys[slot];
+        if (key == null || key.length() != len) {
+            return null;
+        }
+        for (int i = 0; i < len; ++i) {
+            if (key.charAt(i) != buf[off + i]) {
+                return null;
+            }
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Gets the value associated with a string.
+     *
+     * @param keyStr the key.
+     * @return the value associated with the key if it exists, otherwise, return null.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String keyStr) {
+        int slot = hash(seed, keyStr) >>> shift;
+        return keyStr.equals(keys[slot]) ? (V) values[slot] : null;
+    }
+}
@@ -0,0 +1,133 @@
+package tokens;
+
+import java.util.Arrays;
+
+// The source offsets where lines start, which map an offset to its line and column by binary search, so that a lexer
+// records where newlines are once per block of characters instead of counting lines as it reads each character
+// One thread adds line starts while other threads may look up the lines of tokens it has handed over, line starts
+// only become visible to lookups once they are committed and never change afterwards
+// The lines a reader has moved past are dropped by moving the rest into a new index, so that the index of a long source
+// only holds the lines that are still needed, while tokens keep looking up their lines in the index they were made with
+public class LineIndex {
+    private final static int INIT_CAPACITY = 256;
+    private final int firstLine;
+    // lineStarts[i] is the offset where line firstLine + i starts, the array is replaced when it grows
+    private volatile long[] lineStarts = new long[INIT_CAPACITY];
+    private int numLines = 1;
+    private volatile int numCommitted = 1;
+    // Index of the line found by the most recent lookup, since tokens are usually looked up in order
+    private int hint = 0;
+
+    /**
+     * Creates an index for a source or part of a source.
+     *
+     * @param firstLineStart the source offset where the first line starts, which may be before the first character
+     *                       that is read if the part starts in the middle of a line.
+     * @param firstLine      the line number of the first line.
+     */
+    public LineIndex(long firstLineStart, int firstLine) {
+        lineStarts[0] = firstLineStart;
+        this.firstLine = firstLine;
+    }
+
+    private LineIndex(long[] lineStarts, int numLines, int numCommitted, int firstLine) {
+        this.lineStarts = lineStarts;
+        this.numLines = numLines;
+        this.numCommitted = numCommitted;
+        this.firstLine = firstLine;
+    }
+
+    /**
+     * Drops the lines that end at or before an offset once they take up at least half of the index. This index is left
+     * intact for the tokens that still look up their lines in it, and the lines that are kept move to a new one.
+     *
+     * @param offset the source offset before which no more lookups are made in the returned index.
+     * @return this index if there are few lines to drop, otherwise a new index that starts with the line of the offset.
+     */
+    public LineIndex discardBefore(long offset) {
+        long[] starts = lineStarts;
+        int i = find(offset);
+        if (i < starts.length / 2) {
+            return this;
+        }
+        // The kept lines fill less than half of the new array, which is only as large as they need
+        int kept = numLines - i;
+        int capacity = Math.max(INIT_CAPACITY, Integer.highestOneBit(kept) << 2);
+        return new LineIndex(Arrays.copyOfRange(starts, i, i + capacity), kept, numCommitted - i, firstLine + i);
+    }
+
+    /**
+     * Adds the start of the next line, which is not visible to lookups until the next commit.
+     *
+     * @param offset the source offset right after a newline.
+     */
+    public void add(long offset) {
+        long[] starts = lineStarts;
+        if (numLines == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+            lineStarts = starts;
+        }
+        starts[numLines++] = offset;
+    }
+
+    /**
+     * Makes the line starts added so far visible to lookups on every thread.
+     */
+    public void commit() {
+        numCommitted = numLines;
+    }
+
+    /**
+     * Gets the line of a source offset.
+     *
+     * @param offset a source offset before the start of any line that has not been committed yet.
+     * @return an integer as the line number.
+     */
+    public int getLine(long offset) {
+        return firstLine + find(offset);
+    }
+
+    /**
+     * Gets the column of a source offset.
+     *
+     * @param offset a source offset before the start of any line that has not been committed yet.
+     * @return an integer as the column number, counting from 1.
+     */
+    public int getColumn(long offset) {
+        return (int) (offset - lineStarts[find(offset)] + 1);
+    }
+
+    /**
+     * Finds the last committed line that starts at or before an offset, checking the line of the most recent lookup
+     * and the one after it before searching.
+     *
+     * @return the index of the line.
+     */
+    private int find(long offset) {
+        // The count is read first, so the array has at least as many line starts
+        int n = numCommitted;
+        long[] starts = lineStarts;
+        // The hint may come from another thread's lookup, it is only used if it is in range
+        int i = hint;
+        if (i < n && starts[i] <= offset) {
+            if (i + 1 == n || offset < starts[i + 1]) {
+                return i;
+            }
+            if (i + 2 == n || offset < starts[i + 2]) {
+                hint = i + 1;
+                return i + 1;
+            }
+        }
+        int lo = 0, hi = n - 1, mid;
+        while (lo < hi) {
+            mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        hint = lo;
+        return lo;
+    }
+}
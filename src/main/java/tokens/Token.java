@@ -1,39 +1,241 @@
 package tokens;
 
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.util.Objects;
+
 public class Token {
-    private final String value;
+    // Built from the source span the first time it is needed
+    private String value;
+    // Source span, src is null if the token is created from a string
+    private final char[] src;
+    private final int srcOff;
+    private final long start;
+    private final long end;
     private TokenType type;
-    private final int lineNum;
+    // Resolved from the line index the first time it is needed if the token has one, 0 until then
+    private int lineNum;
+    // The line index of the source, null if the token is created with its line number
+    private final LineIndex lines;
+    // Id of the identifier in a symbol pool, -1 if the token is not an interned identifier
+    private int symbolId = -1;
+    // Value of a numeric literal, the value itself for integers and the bits of the double for floating-point numbers
+    private long numValue;
+    private boolean hasNumValue = false;
 
     public Token(String value, TokenType type, int lineNum) {
         this.value = value;
         this.type = type;
         this.lineNum = lineNum;
+        src = null;
+        srcOff = 0;
+        start = -1;
+        end = -1;
+        lines = null;
     }
 
     public Token(String value, TokenType type) {
         this(value, type, 1);
     }
 
+    /**
+     * Creates a token whose lexeme is a view over the given characters, which must not be modified afterwards.
+     *
+     * @param src     the characters the token is read from.
+     * @param srcOff  the index of the token's first character in src.
+     * @param type    the token type.
+     * @param start   the source offset where the token starts.
+     * @param end     the source offset where the token ends(exclusive).
+     * @param lineNum the line number of the token.
+     */
+    public Token(char[] src, int srcOff, TokenType type, long start, long end, int lineNum) {
+        this.src = src;
+        this.srcOff = srcOff;
+        this.type = type;
+        this.start = start;
+        this.end = end;
+        this.lineNum = lineNum;
+        lines = null;
+    }
+
+    /**
+     * Creates a token whose lexeme is a view over the given characters, which must not be modified afterwards, and
+     * whose line number is only looked up in the source's line index when it is asked for.
+     *
+     * @param src    the characters the token is read from.
+     * @param srcOff the index of the token's first character in src.
+     * @param type   the token type.
+     * @param start  the source offset where the token starts.
+     * @param end    the source offset where the token ends(exclusive).
+     * @param lines  the line index of the source.
+     */
+    public Token(char[] src, int srcOff, TokenType type, long start, long end, LineIndex lines) {
+        this.src = src;
+        this.srcOff = srcOff;
+        this.type = type;
+        this.start = start;
+        this.end = end;
+        this.lines = lines;
+    }
+
+    /**
+     * Gets the token's value, which is its source text except for floating-point literals, which are normalized to have
+     * digits on both sides of the dot.
+     *
+     * @return a string as the token's value.
+     */
     public String getValue() {
+        if (value == null && src != null) {
+            value = valueOf(type, CharBuffer.wrap(src, srcOff, (int) (end - start)));
+        }
         return value;
     }
 
+    /**
+     * Gets the token's source text without copying it.
+     *
+     * @return a CharSequence object as the token's source text.
+     */
+    public CharSequence getLexeme() {
+        return src == null ? value : CharBuffer.wrap(src, srcOff, (int) (end - start));
+    }
+
     public TokenType getType() {
         return type;
     }
 
     public int getLineNum() {
+        if (lineNum == 0 && lines != null) {
+            lineNum = lines.getLine(start);
+        }
         return lineNum;
     }
 
+    /**
+     * Gets the column where the token starts.
+     *
+     * @return an integer as the column number, counting from 1, or -1 if the token is not read by a lexer.
+     */
+    public int getColumn() {
+        return lines == null ? -1 : lines.getColumn(start);
+    }
+
+    /**
+     * Gets the source offset where the token starts.
+     *
+     * @return a long integer as the offset, -1 if the token is not read from a source.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the source offset where the token ends(exclusive).
+     *
+     * @return a long integer as the offset, -1 if the token is not read from a source.
+     */
+    public long getEnd() {
+        return end;
+    }
+
     public void setType(TokenType type) {
         this.type = type;
     }
 
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    /**
+     * Associates the token with an interned identifier, whose canonical string becomes the token's value.
+     *
+     * @param symbolId the id of the identifier in a symbol pool.
+     * @param name     the canonical string of the identifier.
+     */
+    public void setSymbol(int symbolId, String name) {
+        this.symbolId = symbolId;
+        value = name;
+    }
+
+    /**
+     * Gets the value of an integer literal, which is computed by the lexer or parsed from the token's value if the
+     * token is not read from a source.
+     *
+     * @return the integer literal's value.
+     * @throws IllegalStateException if the token is not an integer literal.
+     */
+    public long getLongValue() {
+        if (type != TokenType.INT_LITERAL) {
+            throw new IllegalStateException("Token '" + getValue() + "' is not an integer literal");
+        }
+        if (!hasNumValue) {
+            setLongValue(new BigDecimal(getValue()).longValueExact());
+        }
+        return numValue;
+    }
+
+    /**
+     * Gets the value of a numeric literal as a double, which is computed by the lexer or parsed from the token's value
+     * if the token is not read from a source.
+     *
+     * @return the numeric literal's value.
+     * @throws IllegalStateException if the token is not a numeric literal.
+     */
+    public double getDoubleValue() {
+        if (type == TokenType.INT_LITERAL) {
+            return getLongValue();
+        }
+        if (type != TokenType.FLOAT_LITERAL) {
+            throw new IllegalStateException("Token '" + getValue() + "' is not a numeric literal");
+        }
+        if (!hasNumValue) {
+            setDoubleValue(Double.parseDouble(getValue()));
+        }
+        return Double.longBitsToDouble(numValue);
+    }
+
+    public void setLongValue(long value) {
+        numValue = value;
+        hasNumValue = true;
+    }
+
+    public void setDoubleValue(double value) {
+        numValue = Double.doubleToRawLongBits(value);
+        hasNumValue = true;
+    }
+
+    /**
+     * Converts a lexeme to a token value, filling in the missing digits around the dot of a floating-point literal.
+     *
+     * @param type   the token type.
+     * @param lexeme the token's source text.
+     * @return a string as the token's value.
+     */
+    static String valueOf(TokenType type, CharSequence lexeme) {
+        if (type != TokenType.FLOAT_LITERAL) {
+            return lexeme.toString();
+        }
+        int len = lexeme.length();
+        StringBuilder value = new StringBuilder(len + 2);
+        char c;
+        for (int i = 0; i < len; ++i) {
+            c = lexeme.charAt(i);
+            if (c == '.' && i == 0) {
+                // Fill in the missing integer part
+                value.append('0');
+            }
+            value.append(c);
+            if (c == '.' && (i + 1 == len || !Character.isDigit(lexeme.charAt(i + 1)))) {
+                // Fill in the missing fraction
+                value.append('0');
+            }
+        }
+        return value.toString();
+    }
+
     @Override
     public String toString() {
-        return "Token: " + value + ", Token type: " + type + ", Line number: " + lineNum;
+        return "Token: " + getValue() + ", Token type: " + type + ", Line number: " + getLineNum();
     }
 
     @Override
@@ -44,6 +246,6 @@ public class Token {
         if (!(obj instanceof Token token)) {
             return false;
         }
-        return value.equals(token.getValue()) && type == token.type;
+        return Objects.equals(getValue(), token.getValue()) && type == token.type;
     }
 }
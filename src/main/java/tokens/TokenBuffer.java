@@ -0,0 +1,224 @@
+package tokens;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Stores tokens column by column in parallel int arrays instead of one Token object per token
+public class TokenBuffer {
+    private final static int INIT_CAPACITY = 256;
+    private final static TokenType[] TYPES = TokenType.values();
+    // The input the tokens were lexed from
+    private final CharSequence source;
+    // Token type ordinals
+    private int[] types;
+    // Source offsets where the tokens start
+    private int[] starts;
+    // Number of source characters in each token
+    private int[] lengths;
+    private int[] lineNums;
+    private int size = 0;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, INIT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty buffer that can hold the given number of tokens before it grows.
+     *
+     * @param source   the input the tokens are lexed from.
+     * @param capacity the initial number of tokens the buffer can hold.
+     */
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 1);
+        types = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lineNums = new int[capacity];
+    }
+
+    /**
+     * Appends a token to the end of the buffer, growing the columns if they are full.
+     *
+     * @param type    the token type.
+     * @param start   the source offset where the token starts.
+     * @param length  the number of source characters in the token.
+     * @param lineNum the line number of the token.
+     */
+    public void add(TokenType type, int start, int length, int lineNum) {
+        ensureCapacity(size + 1);
+        types[size] = type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lineNums[size] = lineNum;
+        ++size;
+    }
+
+    /**
+     * Appends a range of tokens from another buffer, shifting their offsets and line numbers.
+     *
+     * @param toks        the buffer to copy the tokens from.
+     * @param from        the index of the first token to copy.
+     * @param to          the index after the last token to copy.
+     * @param offsetShift the amount added to the tokens' offsets.
+     * @param lineShift   the amount added to the tokens' line numbers.
+     */
+    public void addAll(TokenBuffer toks, int from, int to, int offsetShift, int lineShift) {
+        if (from < 0 || from > to || to > toks.size) {
+            throw new IndexOutOfBoundsException("Token range [" + from + ", " + to + ") out of bounds for size " +
+                    toks.size);
+        }
+        ensureCapacity(size + to - from);
+        for (int i = from; i < to; ++i) {
+            types[size] = toks.types[i];
+            starts[size] = toks.starts[i] + offsetShift;
+            lengths[size] = toks.lengths[i];
+            lineNums[size] = toks.lineNums[i] + lineShift;
+            ++size;
+        }
+    }
+
+    /**
+     * Grows the columns so that they can hold at least the given number of tokens.
+     *
+     * @param capacity the number of tokens.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) {
+            return;
+        }
+        int newCapacity = Math.max(types.length * 2, capacity);
+        types = Arrays.copyOf(types, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+        lineNums = Arrays.copyOf(lineNums, newCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public TokenType getType(int i) {
+        return TYPES[types[checkIndex(i)]];
+    }
+
+    public int getStart(int i) {
+        return starts[checkIndex(i)];
+    }
+
+    public int getLength(int i) {
+        return lengths[checkIndex(i)];
+    }
+
+    public int getLineNum(int i) {
+        return lineNums[checkIndex(i)];
+    }
+
+    /**
+     * Gets the value of a token the same way Token.getValue() does. The value is the token's source text except for
+     * floating-point literals, which are normalized to have digits on both sides of the dot, and EOF, which has none.
+     *
+     * @param i the index of the token.
+     * @return a string as the token's value or null if the token is EOF.
+     */
+    public String getValue(int i) {
+        TokenType type = getType(i);
+        if (type == TokenType.EOF) {
+            return null;
+        }
+        return Token.valueOf(type, source.subSequence(starts[i], starts[i] + lengths[i]));
+    }
+
+    /**
+     * Creates a Token object for a token in the buffer.
+     *
+     * @param i the index of the token.
+     * @return a Token object equal to the one the lexer would have returned.
+     */
+    public Token getToken(int i) {
+        TokenType type = getType(i);
+        if (type == TokenType.EOF) {
+            return new Token(null, type);
+        }
+        return new Token(getValue(i), type, lineNums[i]);
+    }
+
+    /**
+     * Creates a cursor positioned before the first token.
+     *
+     * @return a Cursor object over this buffer.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Creates a stream over every token in the buffer. The stream knows its size and splits evenly, which suits
+     * parallel pipelines over tokens that have already been lexed.
+     *
+     * @return a Stream object that creates a Token object for each token in the buffer.
+     */
+    public Stream<Token> tokens() {
+        return IntStream.range(0, size).mapToObj(this::getToken);
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Token index " + i + " out of bounds for size " + size);
+        }
+        return i;
+    }
+
+    // A flyweight view that walks the buffer one token at a time without creating Token objects
+    public class Cursor {
+        private int index = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves the cursor to the next token.
+         *
+         * @return true if the cursor is on a token and false if it has moved past the last one.
+         */
+        public boolean next() {
+            if (index < size) {
+                ++index;
+            }
+            return index < size;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public TokenType getType() {
+            return TokenBuffer.this.getType(index);
+        }
+
+        public int getStart() {
+            return TokenBuffer.this.getStart(index);
+        }
+
+        public int getLength() {
+            return TokenBuffer.this.getLength(index);
+        }
+
+        public int getLineNum() {
+            return TokenBuffer.this.getLineNum(index);
+        }
+
+        public String getValue() {
+            return TokenBuffer.this.getValue(index);
+        }
+
+        public Token toToken() {
+            return TokenBuffer.this.getToken(index);
+        }
+    }
+}
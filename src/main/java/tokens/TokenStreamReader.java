@@ -0,0 +1,153 @@
+package tokens;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Reads tokens one at a time from a stream written by TokenStreamWriter, see there for the format
+public class TokenStreamReader implements Closeable {
+    private final static int BUFF_SIZE = 8192;
+    private final static TokenType[] TYPES = TokenType.values();
+    private final InputStream in;
+    private final byte[] buff = new byte[BUFF_SIZE];
+    private int buffPos = 0;
+    private int buffLim = 0;
+    // Values in the order they first appeared in the stream
+    private final ArrayList<String> stringTable = new ArrayList<>();
+    private int prevLineNum = 0;
+
+    /**
+     * Creates a reader and checks the header of the format.
+     *
+     * @param in the stream to read from.
+     * @throws IOException if the header cannot be read or the stream is not in a supported format.
+     */
+    public TokenStreamReader(InputStream in) throws IOException {
+        this.in = in;
+        for (byte b : TokenStreamWriter.MAGIC) {
+            if (readByte() != b) {
+                throw new IOException("Not a token stream");
+            }
+        }
+        int version = readVarint();
+        if (version != TokenStreamWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported token stream version " + version);
+        }
+    }
+
+    /**
+     * Reads the next token in the stream.
+     *
+     * @return the next token or null if the end of the stream is reached.
+     * @throws IOException if the token cannot be read or is malformed.
+     */
+    public Token read() throws IOException {
+        if (buffPos == buffLim && !fill()) {
+            return null;
+        }
+        int typeOrdinal = readVarint();
+        if (typeOrdinal < 0 || typeOrdinal >= TYPES.length) {
+            throw new IOException("Invalid token type " + typeOrdinal);
+        }
+        int zigzag = readVarint();
+        int lineNum = prevLineNum + ((zigzag >>> 1) ^ -(zigzag & 1));
+        prevLineNum = lineNum;
+
+        int ref = readVarint();
+        String value;
+        if (ref == TokenStreamWriter.NULL_REF) {
+            value = null;
+        } else if (ref == TokenStreamWriter.NEW_REF) {
+            int len = readVarint();
+            if (len < 0 || len > TokenStreamWriter.MAX_VALUE_LEN) {
+                throw new IOException("Invalid value length " + len);
+            }
+            value = new String(readBytes(len), StandardCharsets.UTF_8);
+            if (stringTable.size() < TokenStreamWriter.MAX_TABLE_SIZE) {
+                stringTable.add(value);
+            }
+        } else if (ref >= TokenStreamWriter.FIRST_TABLE_REF &&
+                ref - TokenStreamWriter.FIRST_TABLE_REF < stringTable.size()) {
+            value = stringTable.get(ref - TokenStreamWriter.FIRST_TABLE_REF);
+        } else {
+            throw new IOException("Invalid value reference " + ref);
+        }
+        return new Token(value, TYPES[typeOrdinal], lineNum);
+    }
+
+    /**
+     * Reads an unsigned varint written by TokenStreamWriter.
+     *
+     * @return the integer, negative if it does not fit into 31 bits.
+     * @throws IOException if the stream ends in the middle of the varint or the varint is too long.
+     */
+    private int readVarint() throws IOException {
+        int n = 0, b;
+        for (int shift = 0; shift < 35; shift += 7) {
+            b = readByte();
+            n |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    private int readByte() throws IOException {
+        if (buffPos == buffLim && !fill()) {
+            throw new EOFException("Unexpected end of token stream");
+        }
+        return buff[buffPos++] & 0xFF;
+    }
+
+    /**
+     * Reads a number of bytes that has been checked against MAX_VALUE_LEN. Bytes beyond the internal buffer are read
+     * in blocks, so a length that runs past the end of the stream does not allocate more than the stream holds.
+     *
+     * @param len the number of bytes.
+     * @return an array of the bytes.
+     * @throws IOException if the stream ends before all the bytes are read.
+     */
+    private byte[] readBytes(int len) throws IOException {
+        int n = Math.min(len, buffLim - buffPos);
+        if (n == len) {
+            byte[] bytes = Arrays.copyOfRange(buff, buffPos, buffPos + n);
+            buffPos += n;
+            return bytes;
+        }
+        byte[] rest = in.readNBytes(len - n);
+        if (rest.length < len - n) {
+            throw new EOFException("Unexpected end of token stream");
+        }
+        byte[] bytes = new byte[len];
+        System.arraycopy(buff, buffPos, bytes, 0, n);
+        System.arraycopy(rest, 0, bytes, n, rest.length);
+        buffPos += n;
+        return bytes;
+    }
+
+    /**
+     * Reads the next block of bytes from the stream into the internal buffer.
+     *
+     * @return true if bytes have been read and false if the end of the stream is reached.
+     * @throws IOException if there is an error while reading from the stream.
+     */
+    private boolean fill() throws IOException {
+        int n = in.read(buff, 0, buff.length);
+        if (n <= 0) {
+            return false;
+        }
+        buffPos = 0;
+        buffLim = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,129 @@
+package tokens;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+// Writes tokens to a stream in a compact binary format that TokenStreamReader reads back
+// The stream starts with the magic bytes "MLTS" and a format version, followed by one record per token:
+// - the token type's ordinal as a varint,
+// - the difference between the token's line number and the previous token's as a zigzag varint,
+// - a reference to the token's value as a varint: 0 for no value, 1 for a new value that follows as a varint byte
+//   length and UTF-8 bytes and is added to the string table, n + 2 for the n-th value in the string table.
+// The string table holds at most MAX_TABLE_SIZE values, later new values are written in full every time they appear,
+// and a value is at most MAX_VALUE_LEN bytes long, so that a reader's memory is bounded whatever the stream contains.
+public class TokenStreamWriter implements Closeable, Flushable {
+    final static byte[] MAGIC = {'M', 'L', 'T', 'S'};
+    final static int FORMAT_VERSION = 3;
+    final static int NULL_REF = 0;
+    final static int NEW_REF = 1;
+    final static int FIRST_TABLE_REF = 2;
+    final static int MAX_TABLE_SIZE = 1 << 20;
+    final static int MAX_VALUE_LEN = 1 << 24;
+    private final static int BUFF_SIZE = 8192;
+    private final OutputStream out;
+    private final byte[] buff = new byte[BUFF_SIZE];
+    private int buffPos = 0;
+    // Index of each value that has been written, values are written in full only once
+    private final HashMap<String, Integer> stringTable = new HashMap<>();
+    private int prevLineNum = 0;
+
+    /**
+     * Creates a writer and writes the header of the format.
+     *
+     * @param out the stream to write to.
+     * @throws IOException if the header cannot be written.
+     */
+    public TokenStreamWriter(OutputStream out) throws IOException {
+        this.out = out;
+        writeBytes(MAGIC, 0, MAGIC.length);
+        writeVarint(FORMAT_VERSION);
+    }
+
+    /**
+     * Appends a token to the stream, such as one returned by Lexer.consume().
+     *
+     * @param tok the token to be written.
+     * @throws IOException if the token cannot be written or its value is longer than the format allows.
+     */
+    public void write(Token tok) throws IOException {
+        writeVarint(tok.getType().ordinal());
+        int delta = tok.getLineNum() - prevLineNum;
+        writeVarint((delta << 1) ^ (delta >> 31));
+        prevLineNum = tok.getLineNum();
+
+        String value = tok.getValue();
+        if (value == null) {
+            writeVarint(NULL_REF);
+            return;
+        }
+        Integer index = stringTable.get(value);
+        if (index != null) {
+            writeVarint(index + FIRST_TABLE_REF);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_VALUE_LEN) {
+            throw new IOException("Token value of " + bytes.length + " bytes is too long for a token stream");
+        }
+        if (stringTable.size() < MAX_TABLE_SIZE) {
+            stringTable.put(value, stringTable.size());
+        }
+        writeVarint(NEW_REF);
+        writeVarint(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes an unsigned integer 7 bits at a time, least significant group first, with the high bit of each byte set
+     * if more bytes follow.
+     *
+     * @param n the integer to be written, interpreted as unsigned.
+     * @throws IOException if the buffer cannot be flushed.
+     */
+    private void writeVarint(int n) throws IOException {
+        if (buffPos + 5 > buff.length) {
+            flushBuffer();
+        }
+        while ((n & ~0x7F) != 0) {
+            buff[buffPos++] = (byte) ((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buff[buffPos++] = (byte) n;
+    }
+
+    private void writeBytes(byte[] bytes, int off, int len) throws IOException {
+        if (buffPos + len > buff.length) {
+            flushBuffer();
+            if (len > buff.length) {
+                out.write(bytes, off, len);
+                return;
+            }
+        }
+        System.arraycopy(bytes, off, buff, buffPos, len);
+        buffPos += len;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buff, 0, buffPos);
+        buffPos = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package tokens;
 
 public enum TokenType {
-    UNKNOWN, VAR_DECL, CONST_DECL,
+    UNKNOWN, ERROR, VAR_DECL, CONST_DECL,
     TYPE_ID, ID, INT_LITERAL, FLOAT_LITERAL, BOOL_LITERAL,
     ADD, SUB, MULT, DIV, MOD,
     BITWISE_NOT, BITWISE_AND, BITWISE_OR,
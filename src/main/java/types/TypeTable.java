@@ -1,27 +1,37 @@
 package types;
 
+import tables.PerfectHashTable;
+
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
 
 public class TypeTable {
     public final static TypeInfo INT = new TypeInfo("int", 4);
     public final static TypeInfo FLOAT = new TypeInfo("float", 4);
     public final static TypeInfo BOOL = new TypeInfo("bool", 1);
-    // String-to-type map
-    private final HashMap<String, TypeInfo> typeMap = new HashMap<>();
+    // String-to-type map, replaced rather than modified so that readers never see it half updated
+    private volatile HashMap<String, TypeInfo> typeMap = new HashMap<>();
+    // Perfect hash compiled from the string-to-type map
+    private volatile PerfectHashTable<TypeInfo> typeLookup = new PerfectHashTable<>(typeMap);
+    // Incremented after every change to the table, so that what is derived from it can tell when to be rebuilt
+    private volatile int version = 0;
     // Type conversion map
     private final HashMap<TypeConv, TypeConv> typeConvMap = new HashMap<>();
     private final static TypeTable INSTANCE = new TypeTable();
+    // Only read and written while holding the class lock in getInstance()
     private static boolean init = false;
 
     private TypeTable() {
     }
 
     /**
-     * Initializes the only instance of TypeTable if it has not been initialized and then returns it.
+     * Initializes the only instance of TypeTable if it has not been initialized and then returns it. Initialization is
+     * synchronized, so the instance is fully built before any thread can see it and can be shared across threads.
      *
      * @return a TypeTable object.
      */
-    public static TypeTable getInstance() {
+    public static synchronized TypeTable getInstance() {
         if (!init) {
             // Add types to table
             INSTANCE.registerType(INT);
@@ -40,12 +50,29 @@ public class TypeTable {
     }
 
     /**
-     * Adds a new data type to the table.
+     * Adds a new data type to the table. Lookups running on other threads keep using the old table until the new one
+     * is published.
      *
      * @param type TypeInfo object that carries type data.
      */
-    public void registerType(TypeInfo type) {
-        typeMap.put(type.getId(), type);
+    public synchronized void registerType(TypeInfo type) {
+        HashMap<String, TypeInfo> newTypeMap = new HashMap<>(typeMap);
+        newTypeMap.put(type.getId(), type);
+        // Recompile the perfect hash, types are rarely registered
+        PerfectHashTable<TypeInfo> newTypeLookup = new PerfectHashTable<>(newTypeMap);
+        typeMap = newTypeMap;
+        typeLookup = newTypeLookup;
+        ++version;
+    }
+
+    /**
+     * Gets the number of changes made to the table, which is read before the table so that a change made in between
+     * shows up as a newer version.
+     *
+     * @return an integer as the version of the table.
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
@@ -55,7 +82,28 @@ public class TypeTable {
      * @return a TypeInfo object associated with the given id.
      */
     public TypeInfo getType(String id) {
-        return typeMap.get(id);
+        return typeLookup.get(id);
+    }
+
+    /**
+     * Gets the type associated with a range of characters without creating a string.
+     *
+     * @param buf the characters of the type's id.
+     * @param off the index of the first character.
+     * @param len the number of characters.
+     * @return a TypeInfo object associated with the id if it exists, otherwise, return null.
+     */
+    public TypeInfo getType(char[] buf, int off, int len) {
+        return typeLookup.get(buf, off, len);
+    }
+
+    /**
+     * Gets the ids of all the types in the table.
+     *
+     * @return a read-only set of type ids.
+     */
+    public Set<String> getTypeIds() {
+        return Collections.unmodifiableSet(typeMap.keySet());
     }
 
     /**
@@ -1,19 +1,66 @@
+import cache.TokenCache;
+import corpus.CorpusGenerator;
+import corpus.DifferentialHarness;
+import diagnostics.Diagnostic;
+import lexers.BatchLexer;
+import lexers.CharReader;
+import lexers.IncrementalLexer;
 import lexers.Lexer;
+import lexers.LexerMetrics;
+import lexers.MappedFileReader;
+import lexers.ParallelLexer;
+import lexers.TokenPublisher;
 import exceptions.SyntaxError;
+import exceptions.UncheckedSyntaxError;
+import symbols.SymbolPool;
+import tables.PerfectHashTable;
+import tokens.LineIndex;
 import tokens.Token;
+import tokens.TokenBuffer;
+import tokens.TokenStreamReader;
+import tokens.TokenStreamWriter;
 import tokens.TokenType;
+import types.TypeInfo;
+import types.TypeTable;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class LexerTest {
     private ArrayList<Token> extractToks(String input) throws SyntaxError, IOException {
-        BufferedReader reader = new BufferedReader(new StringReader(input));
+        return extractToks(new BufferedReader(new StringReader(input)));
+    }
+
+    private ArrayList<Token> extractToks(Reader reader) throws SyntaxError, IOException {
         Lexer lexer = new Lexer(reader);
         ArrayList<Token> tokList = new ArrayList<>();
         Token tok;
@@ -92,4 +139,1099 @@ class LexerTest {
             fail();
         }
     }
+
+    @Test
+    public void testCharReaderMarkReset() {
+        // Longer than the reader's buffer, so a mark has to keep characters across refills
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; input.length() < 20000; ++i) {
+            input.append("abc").append(i).append(' ');
+        }
+        try {
+            CharReader reader = new CharReader(new StringReader(input.toString()));
+            assertEquals('a', reader.read());
+            long start = reader.mark();
+            assertEquals(1, start);
+            for (int i = 1; i < input.length(); ++i) {
+                assertEquals(input.charAt(i), reader.read());
+            }
+            assertTrue(reader.isEos(reader.read()));
+            assertEquals(input.length(), reader.getOffset());
+            assertEquals(input.substring(1), reader.getLexeme(start).toString());
+
+            // Every character since the mark can be read again
+            reader.reset(start + 10000);
+            assertEquals(start + 10000, reader.getOffset());
+            assertEquals(input.charAt(10001), reader.peek());
+            assertEquals(input.substring(1, 10001), reader.getLexeme(start).toString());
+            reader.reset(start);
+            for (int i = 1; i < 100; ++i) {
+                assertEquals(input.charAt(i), reader.read());
+            }
+
+            // A new mark releases the old one, and the reader cannot go back past it or ahead of the read position
+            long next = reader.mark();
+            assertEquals(100, next);
+            assertThrows(IllegalArgumentException.class, () -> reader.reset(start));
+            assertThrows(IllegalArgumentException.class, () -> reader.reset(next + 1));
+            assertEquals(input.charAt(100), reader.read());
+            reader.reset(next);
+            assertEquals(input.charAt(100), reader.read());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testMappedFileInput(@TempDir Path tempDir) {
+        String input = "var \u00e9t\u00e9: float = .78e9;\nlet b = \u00e9t\u00e9 * (2.e-1 - 71e3)\n\n{ true }";
+        try {
+            Path file = tempDir.resolve("input.txt");
+            Files.writeString(file, input);
+            ArrayList<Token> expected = extractToks(input);
+            ArrayList<Token> actual;
+            try (MappedFileReader reader = new MappedFileReader(file)) {
+                actual = extractToks(reader);
+            }
+            assertEquals(expected, actual);
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.get(i).getLineNum(), actual.get(i).getLineNum());
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testLexAll() {
+        String input = "let x: int = 5;\nvar y = .5e-3 * (x + 2.)";
+        try {
+            ArrayList<Token> expected = extractToks(input);
+            TokenBuffer toks = Lexer.lexAll(input);
+            assertEquals(expected.size() + 1, toks.size());
+            TokenBuffer.Cursor cursor = toks.cursor();
+            for (Token tok : expected) {
+                assertTrue(cursor.next());
+                assertEquals(tok, cursor.toToken());
+                assertEquals(tok.getLineNum(), cursor.getLineNum());
+            }
+            assertTrue(cursor.next());
+            assertEquals(TokenType.EOF, cursor.getType());
+            assertFalse(cursor.next());
+            // Token spans point back into the input
+            assertEquals(16, toks.getStart(7));
+            assertEquals(3, toks.getLength(7));
+            // Other in-memory inputs are read in place, a char buffer from its position on
+            CharBuffer buffer = CharBuffer.wrap("#;" + input);
+            buffer.position(2);
+            for (CharSequence other : List.of(new StringBuilder(input), buffer.slice(), buffer)) {
+                TokenBuffer otherToks = Lexer.lexAll(other);
+                assertEquals(toks.size(), otherToks.size());
+                for (int i = 0; i < toks.size(); ++i) {
+                    assertEquals(toks.getToken(i), otherToks.getToken(i));
+                    assertEquals(toks.getStart(i), otherToks.getStart(i));
+                    assertEquals(toks.getLineNum(i), otherToks.getLineNum(i));
+                }
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testTokenSpans() {
+        String input = "var b =\n  .5";
+        try {
+            ArrayList<Token> actual = extractToks(input);
+            Token num = actual.get(3);
+            assertEquals(10, num.getStart());
+            assertEquals(12, num.getEnd());
+            assertEquals(".5", num.getLexeme().toString());
+            assertEquals("0.5", num.getValue());
+            assertEquals(2, num.getLineNum());
+            assertEquals("b", input.substring((int) actual.get(1).getStart(), (int) actual.get(1).getEnd()));
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testLargeOffsets() {
+        // A stream that starts just before 2 GB into a source, as the tail of a large mapped file does
+        long offset = Integer.MAX_VALUE - 1;
+        CharReader reader = new CharReader(new StringReader("ab\ncd"), offset, 7, offset);
+        try {
+            long start = reader.mark();
+            reader.read();
+            reader.read();
+            Token ab = reader.newToken(start, TokenType.ID);
+            reader.read();
+            start = reader.mark();
+            reader.read();
+            reader.read();
+            Token cd = reader.newToken(start, TokenType.ID);
+            assertEquals(offset, ab.getStart());
+            assertEquals(offset + 2, ab.getEnd());
+            assertEquals(7, ab.getLineNum());
+            assertEquals(1L << 31 | 1, cd.getStart());
+            assertEquals(1L << 31 | 3, cd.getEnd());
+            assertEquals("cd", cd.getValue());
+            assertEquals(8, cd.getLineNum());
+            assertEquals(1, cd.getColumn());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testIdSymbols() {
+        String input = "var a = b + a\nlet c = a";
+        try {
+            ArrayList<Token> actual = extractToks(input);
+            Token a1 = actual.get(1), b = actual.get(3), a2 = actual.get(5), a3 = actual.get(9);
+            assertEquals(a1.getSymbolId(), a2.getSymbolId());
+            assertEquals(a1.getSymbolId(), a3.getSymbolId());
+            assertNotEquals(a1.getSymbolId(), b.getSymbolId());
+            assertSame(a1.getValue(), a3.getValue());
+            assertEquals(-1, actual.get(0).getSymbolId());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testPerfectHashTable() {
+        // "Aa" and "BB" have the same String.hashCode(), and so does every string made of them
+        Map<String, Integer> map = new HashMap<>();
+        for (String key : List.of("Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB", "int", "integer", "in")) {
+            map.put(key, map.size());
+        }
+        PerfectHashTable<Integer> table = new PerfectHashTable<>(map);
+        char[] buf = " AaBB integers in".toCharArray();
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+        // Hits in the middle of a buffer, including keys that are prefixes of other keys
+        assertEquals(map.get("AaBB"), table.get(buf, 1, 4));
+        assertEquals(map.get("Aa"), table.get(buf, 1, 2));
+        assertEquals(map.get("BB"), table.get(buf, 3, 2));
+        assertEquals(map.get("integer"), table.get(buf, 6, 7));
+        assertEquals(map.get("int"), table.get(buf, 6, 3));
+        assertEquals(map.get("in"), table.get(buf, 15, 2));
+        // Misses, including a key that extends another and an empty range
+        assertNull(table.get(buf, 6, 8));
+        assertNull(table.get(buf, 2, 2));
+        assertNull(table.get(buf, 0, 0));
+        assertNull(table.get("Ab"));
+        assertNull(new PerfectHashTable<Integer>(Map.of()).get(buf, 1, 2));
+    }
+
+    @Test
+    public void testTypeConv() {
+        String input = "x as float+ask";
+        ArrayList<Token> expected = new ArrayList<>();
+        expected.add(new Token("x", TokenType.ID));
+        expected.add(new Token("as", TokenType.TYPE_CONV));
+        expected.add(new Token("float", TokenType.TYPE_ID));
+        expected.add(new Token("+", TokenType.ADD));
+        expected.add(new Token("ask", TokenType.ID));
+        try {
+            ArrayList<Token> actual = extractToks(input);
+            assertEquals(expected, actual);
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testParallelLexAll() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            input.append("var x").append(i).append(": float = ").append(i).append(".5e-1 * (y + .").append(i)
+                    .append(");\n\n  let b").append(i).append(" = true;");
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TokenBuffer expected = Lexer.lexAll(input);
+            TokenBuffer actual = new ParallelLexer(pool, 64).lexAll(input);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.getType(i), actual.getType(i));
+                assertEquals(expected.getStart(i), actual.getStart(i));
+                assertEquals(expected.getLength(i), actual.getLength(i));
+                assertEquals(expected.getLineNum(i), actual.getLineNum(i));
+            }
+            // The first error is reported on the same line as the sequential lexer reports it
+            input.insert(input.length() / 2, '#');
+            SyntaxError expectedErr = assertThrows(SyntaxError.class, () -> Lexer.lexAll(input));
+            SyntaxError actualErr = assertThrows(SyntaxError.class, () -> new ParallelLexer(pool, 64).lexAll(input));
+            assertEquals(expectedErr.getMessage(), actualErr.getMessage());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchLexAll(@TempDir Path tempDir) {
+        try {
+            List<Path> paths = new ArrayList<>();
+            for (int i = 0; i < 50; ++i) {
+                Path file = tempDir.resolve("input" + i + ".txt");
+                Files.writeString(file, i == 25 ? "var x = 1;\nlet y = #;" : "var x" + i + ": int = " + i + ";");
+                paths.add(file);
+            }
+            paths.add(tempDir.resolve("missing.txt"));
+            BatchLexer.Result result = new BatchLexer(4).lexAll(paths);
+            assertEquals(paths.size(), result.fileResults().size());
+            for (int i = 0; i < 50; ++i) {
+                BatchLexer.FileResult fileResult = result.fileResults().get(i);
+                assertEquals(paths.get(i), fileResult.path());
+                if (i == 25) {
+                    assertEquals(2, fileResult.syntaxError().getLine());
+                } else {
+                    assertEquals(8, fileResult.toks().size());
+                    assertEquals("x" + i, fileResult.toks().getValue(1));
+                }
+            }
+            assertNotNull(result.fileResults().get(50).ioError());
+            assertEquals(51, result.stats().numFiles());
+            assertEquals(2, result.stats().numFailed());
+            assertEquals(49 * 8, result.stats().numToks());
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testIncrementalEdits() {
+        String text = "var x: int = 5;\nlet y = .5e-3 * (x + 2.)\n\nvar z = y as int;";
+        // Each edit is an offset, a number of removed characters and the inserted text
+        Object[][] edits = {
+                {4, 1, "xyz"}, {0, 0, "let w = 1;\n"}, {23, 0, "\n\n"}, {30, 3, ".25"}, {12, 1, ""},
+                {0, 0, "e"}, {45, 10, "+ 7 "}, {3, 0, "var"}
+        };
+        try {
+            IncrementalLexer lexer = new IncrementalLexer(text);
+            int offset, removedLen;
+            String inserted;
+            for (Object[] edit : edits) {
+                offset = (int) edit[0];
+                removedLen = (int) edit[1];
+                inserted = (String) edit[2];
+                text = text.substring(0, offset) + inserted + text.substring(offset + removedLen);
+                lexer.edit(offset, removedLen, inserted);
+                assertEquals(text, lexer.getText());
+                TokenBuffer expected = Lexer.lexAll(text);
+                // The incremental lexer leaves out EOF
+                assertEquals(expected.size() - 1, lexer.size());
+                for (int i = 0; i < lexer.size(); ++i) {
+                    assertEquals(expected.getToken(i), lexer.getToken(i));
+                    assertEquals(expected.getStart(i), lexer.getStart(i));
+                    assertEquals(expected.getLineNum(i), lexer.getLineNum(i));
+                }
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testIncrementalErrors() {
+        String text = "var x: int = 5;\nlet y = .5e-3 * (x + 2.)\n\nvar z = y as int;";
+        // Typing into the middle of a token and out again, with errors that span up to the next separator
+        Object[][] edits = {
+                {13, 0, "#"}, {13, 1, "1e"}, {14, 1, "e+"}, {16, 1, "3"}, {0, 0, "a#b\n"}, {1, 1, ""},
+                {33, 0, "~~ "}, {33, 3, ""}
+        };
+        IncrementalLexer lexer = new IncrementalLexer(text);
+        int offset, removedLen;
+        String inserted;
+        for (Object[] edit : edits) {
+            offset = (int) edit[0];
+            removedLen = (int) edit[1];
+            inserted = (String) edit[2];
+            text = text.substring(0, offset) + inserted + text.substring(offset + removedLen);
+            lexer.edit(offset, removedLen, inserted);
+            assertEquals(text, lexer.getText());
+            // The tokens match a full lex in recovery mode, ERROR tokens included
+            List<Token> expected = new ArrayList<>();
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            try {
+                Lexer fullLexer = new Lexer(new StringReader(text));
+                fullLexer.setDiagnosticSink(diagnostics::add);
+                Token tok;
+                while ((tok = fullLexer.consume()).getType() != TokenType.EOF) {
+                    expected.add(tok);
+                }
+            } catch (SyntaxError | IOException e) {
+                e.printStackTrace();
+                fail();
+            }
+            assertEquals(expected.size(), lexer.size());
+            int numErrors = 0;
+            for (int i = 0; i < lexer.size(); ++i) {
+                assertEquals(expected.get(i), lexer.getToken(i));
+                assertEquals(expected.get(i).getStart(), lexer.getStart(i));
+                assertEquals(expected.get(i).getEnd(), lexer.getEnd(i));
+                assertEquals(expected.get(i).getLineNum(), lexer.getLineNum(i));
+                if (lexer.getType(i) == TokenType.ERROR) {
+                    ++numErrors;
+                }
+            }
+            assertEquals(diagnostics.size(), numErrors);
+        }
+        // Every error has been edited out again
+        assertEquals("var x: int = 1e+3;\nlet y = .5e-3 * (x + 2.)\n\nvar z = y as int;", text.substring(3));
+        for (int i = 0; i < lexer.size(); ++i) {
+            assertNotEquals(TokenType.ERROR, lexer.getType(i));
+        }
+    }
+
+    @Test
+    public void testTokenCache(@TempDir Path tempDir) {
+        String input = "var x: int = 5;\nlet y = .5e-3 * (x + 2.)";
+        try {
+            Path cacheDir = tempDir.resolve("cache");
+            TokenCache cache = new TokenCache(cacheDir, 1 << 20);
+            TokenBuffer expected = Lexer.lexAll(input);
+            TokenBuffer missed = cache.lex(input.getBytes(StandardCharsets.UTF_8));
+            // A new cache over the same directory sees the entry written by the first one
+            TokenBuffer hit = new TokenCache(cacheDir, 1 << 20).lex(input.getBytes(StandardCharsets.UTF_8));
+            for (TokenBuffer actual : List.of(missed, hit)) {
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); ++i) {
+                    assertEquals(expected.getToken(i), actual.getToken(i));
+                    assertEquals(expected.getStart(i), actual.getStart(i));
+                    assertEquals(expected.getLineNum(i), actual.getLineNum(i));
+                }
+            }
+            assertEquals(1, cache.getNumMisses());
+
+            // A small cache keeps only the most recently used entries, and leaves alone a temporary file that another
+            // process is still writing
+            TokenCache smallCache = new TokenCache(tempDir.resolve("small"), 2048);
+            Path partFile = Files.write(tempDir.resolve("small").resolve("entry123.part"), new byte[1024]);
+            for (int i = 0; i < 20; ++i) {
+                smallCache.lex(("var x" + i + " = " + i + ";").getBytes(StandardCharsets.UTF_8));
+            }
+            long size = 0;
+            try (var files = Files.list(tempDir.resolve("small"))) {
+                for (Path file : files.toList()) {
+                    if (!file.equals(partFile)) {
+                        size += Files.size(file);
+                    }
+                }
+            }
+            assertTrue(size <= 2048);
+            assertTrue(Files.exists(partFile));
+            smallCache.lex("var x19 = 19;".getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, smallCache.getNumHits());
+
+            // Registering a type changes the fingerprint, so entries lexed with the old tables are no longer hit
+            byte[] typed = "let v: cache_probe_t = 1;".getBytes(StandardCharsets.UTF_8);
+            assertEquals(TokenType.ID, cache.lex(typed).getType(3));
+            cache.lex(typed);
+            assertEquals(1, cache.getNumHits());
+            byte[] oldFingerprint = TokenCache.getTableFingerprint();
+            TypeTable.getInstance().registerType(new TypeInfo("cache_probe_t", 8));
+            assertFalse(Arrays.equals(oldFingerprint, TokenCache.getTableFingerprint()));
+            long misses = cache.getNumMisses();
+            assertEquals(TokenType.TYPE_ID, cache.lex(typed).getType(3));
+            assertEquals(misses + 1, cache.getNumMisses());
+            assertEquals(1, cache.getNumHits());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testTokenStreamRoundTrip() {
+        String[] inputs = {
+                "52+-(-25.)-(32.4-+.0e0)/.9*.",
+                "  var b=b +\t-.78e9+.5 *  a/a  *((2.e-1-67.+71e3*21)))\t",
+                "var x: int = 5;\n\n\nlet y = x as float\n{ y = y * 1e3; }",
+                ""
+        };
+        try {
+            for (String input : inputs) {
+                Lexer lexer = new Lexer(new StringReader(input));
+                ArrayList<Token> expected = new ArrayList<>();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (TokenStreamWriter writer = new TokenStreamWriter(bytes)) {
+                    Token tok;
+                    do {
+                        tok = lexer.consume();
+                        expected.add(tok);
+                        writer.write(tok);
+                    } while (tok.getType() != TokenType.EOF);
+                }
+                ArrayList<Token> actual = new ArrayList<>();
+                try (TokenStreamReader reader = new TokenStreamReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+                    Token tok;
+                    while ((tok = reader.read()) != null) {
+                        actual.add(tok);
+                    }
+                }
+                assertEquals(expected, actual);
+                for (int i = 0; i < expected.size(); ++i) {
+                    assertEquals(expected.get(i).getLineNum(), actual.get(i).getLineNum());
+                }
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testTokenStreamLimits() {
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            new TokenStreamWriter(header).close();
+            // A new value whose length does not fit into 31 bits, one above the maximum, and one that runs past the end
+            // of the stream
+            byte[][] corruptTails = {
+                    {0, 0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+                    {0, 0, 1, (byte) 0x81, (byte) 0x80, (byte) 0x80, 0x08},
+                    {0, 0, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x04, 'a', 'b'}
+            };
+            for (byte[] tail : corruptTails) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                bytes.write(header.toByteArray());
+                bytes.write(tail);
+                try (TokenStreamReader reader = new TokenStreamReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+                    assertThrows(IOException.class, reader::read);
+                }
+            }
+
+            // Past the string table's capacity, new values are written in full every time and still read back
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int numValues = (1 << 20) + 10;
+            try (TokenStreamWriter writer = new TokenStreamWriter(bytes)) {
+                for (int i = 0; i < numValues; ++i) {
+                    writer.write(new Token("x" + i, TokenType.ID));
+                }
+                writer.write(new Token("x" + (numValues - 1), TokenType.ID));
+                writer.write(new Token("x0", TokenType.ID));
+            }
+            try (TokenStreamReader reader = new TokenStreamReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+                for (int i = 0; i < numValues; ++i) {
+                    assertEquals("x" + i, reader.read().getValue());
+                }
+                assertEquals("x" + (numValues - 1), reader.read().getValue());
+                assertEquals("x0", reader.read().getValue());
+                assertNull(reader.read());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    // Collects published tokens, requesting them two at a time and cancelling after a given number of them
+    private static class TokenCollector implements Flow.Subscriber<Token> {
+        private final ArrayList<Token> toks = new ArrayList<>();
+        private final CompletableFuture<ArrayList<Token>> result = new CompletableFuture<>();
+        private final int maxToks;
+        private Flow.Subscription subscription;
+
+        private TokenCollector(int maxToks) {
+            this.maxToks = maxToks;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(2);
+        }
+
+        @Override
+        public void onNext(Token tok) {
+            toks.add(tok);
+            if (toks.size() == maxToks) {
+                subscription.cancel();
+                result.complete(toks);
+            } else if (toks.size() % 2 == 0) {
+                subscription.request(2);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            result.completeExceptionally(e);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(toks);
+        }
+    }
+
+    @Test
+    public void testTokenPublisher() {
+        String input = "var x: int = 5;\nlet y = .5e-3 * (x + 2.)";
+        try {
+            ArrayList<Token> expected = extractToks(input);
+            TokenCollector collector = new TokenCollector(-1);
+            new TokenPublisher(new StringReader(input)).subscribe(collector);
+            assertEquals(expected, collector.result.get(10, TimeUnit.SECONDS));
+
+            // Nothing is read after the subscription is cancelled
+            StringReader reader = new StringReader(input);
+            collector = new TokenCollector(3);
+            new TokenPublisher(reader, Runnable::run).subscribe(collector);
+            assertEquals(expected.subList(0, 3), collector.result.get(10, TimeUnit.SECONDS));
+            assertThrows(IOException.class, reader::read);
+
+            // Syntax errors are passed to onError
+            TokenCollector failingCollector = new TokenCollector(-1);
+            new TokenPublisher(new StringReader("var x = #;")).subscribe(failingCollector);
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> failingCollector.result.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(SyntaxError.class, error.getCause());
+        } catch (SyntaxError | IOException | InterruptedException | ExecutionException | TimeoutException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testTokenStreams(@TempDir Path tempDir) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            input.append("var x").append(i).append(": float = ").append(i).append(".5e-1 * (y + .").append(i)
+                    .append(");\n\n  let caf\u00e9").append(i).append(" = \uD835\uDC65;");
+        }
+        try {
+            ArrayList<Token> expected = extractToks(input.toString());
+            assertEquals(expected, new Lexer(new StringReader(input.toString())).tokens().collect(Collectors.toList()));
+            List<Token> actual = Lexer.tokens(input).parallel().collect(Collectors.toList());
+            assertEquals(expected, actual);
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+                assertEquals(expected.get(i).getLineNum(), actual.get(i).getLineNum());
+            }
+            assertEquals(expected.size() + 1, Lexer.lexAll(input).tokens().parallel().count());
+
+            // A lexer over an in-memory input or a mapped file splits its stream too, mapped files at newline bytes
+            assertNotNull(new Lexer(input).tokens().spliterator().trySplit());
+            assertEquals(expected, new Lexer(input).tokens().parallel().collect(Collectors.toList()));
+            Path file = Files.writeString(tempDir.resolve("input.txt"), input);
+            try (Stream<Token> toks = Lexer.tokens(file)) {
+                actual = toks.parallel().collect(Collectors.toList());
+            }
+            assertEquals(expected, actual);
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+                assertEquals(expected.get(i).getLineNum(), actual.get(i).getLineNum());
+            }
+            try (MappedFileReader reader = new MappedFileReader(file)) {
+                Spliterator<Token> spliterator = new Lexer(reader).tokens().spliterator();
+                Spliterator<Token> prefix = spliterator.trySplit();
+                assertNotNull(prefix);
+                ArrayList<Token> halves = new ArrayList<>();
+                prefix.forEachRemaining(halves::add);
+                spliterator.forEachRemaining(halves::add);
+                assertEquals(expected, halves);
+            }
+
+            input.insert(input.length() / 2, '#');
+            assertThrows(UncheckedSyntaxError.class, () -> Lexer.tokens(input).parallel().count());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testParallelSymbolIds() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            input.append("var a").append(i % 50).append(" = b").append(i % 7).append(" + a").append((i + 1) % 50)
+                    .append(";\n");
+        }
+        SymbolPool sequentialPool = new SymbolPool(), parallelPool = new SymbolPool();
+        List<Token> expected = Lexer.tokens(input, sequentialPool).collect(Collectors.toList());
+        List<Token> actual = Lexer.tokens(input, parallelPool).parallel().collect(Collectors.toList());
+        assertEquals(expected, actual);
+        // The ids are interned in the given pool, and the same identifier has the same id in every part of the input
+        HashMap<Integer, Integer> parallelIds = new HashMap<>();
+        HashMap<Integer, Integer> sequentialIds = new HashMap<>();
+        for (int i = 0; i < expected.size(); ++i) {
+            int sequentialId = expected.get(i).getSymbolId(), parallelId = actual.get(i).getSymbolId();
+            if (sequentialId < 0) {
+                assertEquals(-1, parallelId);
+                continue;
+            }
+            assertEquals(expected.get(i).getValue(), sequentialPool.getName(sequentialId));
+            assertEquals(actual.get(i).getValue(), parallelPool.getName(parallelId));
+            assertSame(parallelPool.getName(parallelId), actual.get(i).getValue());
+            assertEquals(parallelId, parallelIds.computeIfAbsent(sequentialId, id -> parallelId));
+            assertEquals(sequentialId, sequentialIds.computeIfAbsent(parallelId, id -> sequentialId));
+        }
+        assertEquals(57, parallelIds.size());
+    }
+
+    @Test
+    public void testPeekAndRewind() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            input.append("var x").append(i).append(" = (").append(i).append(" + .5);\n");
+        }
+        try {
+            ArrayList<Token> expected = extractToks(input.toString());
+            Lexer lexer = new Lexer(new StringReader(input.toString()));
+            // Look far ahead so that the buffer has to grow
+            assertEquals(expected.get(100), lexer.peek(100));
+            assertEquals(expected.get(0), lexer.lookahead());
+            assertEquals(expected.get(0), lexer.consume());
+
+            long outer = lexer.mark();
+            for (int i = 1; i <= 40; ++i) {
+                assertEquals(expected.get(i), lexer.consume());
+            }
+            long inner = lexer.mark();
+            for (int i = 41; i <= 200; ++i) {
+                assertEquals(expected.get(i), lexer.consume());
+            }
+            lexer.rewind(inner);
+            assertEquals(expected.get(41), lexer.consume());
+            lexer.release(inner);
+            assertThrows(IllegalArgumentException.class, () -> lexer.rewind(inner));
+            lexer.rewind(outer);
+            lexer.release(outer);
+            for (int i = 1; i < expected.size(); ++i) {
+                assertEquals(expected.get(i), lexer.consume());
+            }
+            assertEquals(TokenType.EOF, lexer.consume().getType());
+            assertEquals(TokenType.EOF, lexer.peek(3).getType());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testTokenPositionsPastIntRange() {
+        String input = "a = 1; b = 2;\n".repeat(50);
+        try {
+            ArrayList<Token> expected = extractToks(input);
+            Lexer lexer = new Lexer(new StringReader(input));
+            // Start the token positions just before 2^31, as after lexing a multi-GB input
+            for (String name : List.of("buffStart", "tokPos", "buffEnd")) {
+                Field field = Lexer.class.getDeclaredField(name);
+                field.setAccessible(true);
+                field.setLong(lexer, Integer.MAX_VALUE - 10);
+            }
+            Field tokBuff = Lexer.class.getDeclaredField("tokBuff");
+            tokBuff.setAccessible(true);
+            long mark = lexer.mark();
+            for (int i = 0; i < 30; ++i) {
+                assertEquals(expected.get(i), lexer.consume());
+            }
+            lexer.rewind(mark);
+            assertEquals(expected.get(0), lexer.consume());
+            lexer.release(mark);
+            // Consumed tokens are still dropped past 2^31, so the buffer does not grow
+            for (int i = 1; i < expected.size(); ++i) {
+                assertEquals(expected.get(i), lexer.consume());
+            }
+            assertEquals(TokenType.EOF, lexer.consume().getType());
+            assertEquals(32, ((Token[]) tokBuff.get(lexer)).length);
+        } catch (SyntaxError | IOException | ReflectiveOperationException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testNumValues() {
+        try {
+            ArrayList<Token> toks = extractToks("71e3 1.5e3 .5e-3 9223372036854775807 0.1 12345678901234567890.5");
+            assertEquals(71000L, toks.get(0).getLongValue());
+            assertEquals(1500.0, toks.get(1).getDoubleValue());
+            assertEquals(0.0005, toks.get(2).getDoubleValue());
+            assertEquals(Long.MAX_VALUE, toks.get(3).getLongValue());
+            assertEquals(0.1, toks.get(4).getDoubleValue());
+            assertEquals(12345678901234567890.5, toks.get(5).getDoubleValue());
+            assertThrows(IllegalStateException.class, () -> toks.get(4).getLongValue());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+        SyntaxError err = assertThrows(SyntaxError.class, () -> extractToks("9223372036854775808"));
+        assertTrue(err.getMessage().contains("out of range"));
+        // Numbers without a dot whose exponent leaves a fraction are floating-point literals
+        try {
+            ArrayList<Token> toks =
+                    extractToks("15e-1 150e-1 1234567890123456789012e-3 1234567890123456789000e-3 7e-99");
+            assertEquals(TokenType.FLOAT_LITERAL, toks.get(0).getType());
+            assertEquals("15e-1", toks.get(0).getValue());
+            assertEquals(1.5, toks.get(0).getDoubleValue());
+            assertEquals(TokenType.INT_LITERAL, toks.get(1).getType());
+            assertEquals(15L, toks.get(1).getLongValue());
+            assertEquals(TokenType.FLOAT_LITERAL, toks.get(2).getType());
+            assertEquals(1234567890123456789.012, toks.get(2).getDoubleValue());
+            assertEquals(TokenType.INT_LITERAL, toks.get(3).getType());
+            assertEquals(1234567890123456789L, toks.get(3).getLongValue());
+            assertEquals(TokenType.FLOAT_LITERAL, toks.get(4).getType());
+            assertEquals(7e-99, toks.get(4).getDoubleValue());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+        err = assertThrows(SyntaxError.class, () -> extractToks("1e400"));
+        assertTrue(err.getMessage().contains("out of range"));
+    }
+
+    @Test
+    public void testNumEdgeCases() {
+        // An exponent marker or sign must be followed by digits
+        SyntaxError err = assertThrows(SyntaxError.class, () -> extractToks("1e"));
+        assertTrue(err.getMessage().contains("digits after 'e'"));
+        err = assertThrows(SyntaxError.class, () -> extractToks("1e+"));
+        assertTrue(err.getMessage().contains("digits after '+'"));
+        err = assertThrows(SyntaxError.class, () -> extractToks("1.5e"));
+        assertTrue(err.getMessage().contains("digits after 'e'"));
+        err = assertThrows(SyntaxError.class, () -> extractToks("1ea"));
+        assertTrue(err.getMessage().contains("digits after 'e'"));
+        // A number ends at the first character that cannot continue it
+        try {
+            assertEquals(List.of(new Token("12", TokenType.INT_LITERAL, 1), new Token("abc", TokenType.ID, 1)),
+                    extractToks("12abc"));
+            assertEquals(List.of(new Token("1.2", TokenType.FLOAT_LITERAL, 1),
+                    new Token("0.3", TokenType.FLOAT_LITERAL, 1)), extractToks("1.2.3"));
+            ArrayList<Token> toks = extractToks(".5");
+            assertEquals(List.of(new Token("0.5", TokenType.FLOAT_LITERAL, 1)), toks);
+            assertEquals(0.5, toks.get(0).getDoubleValue());
+            assertEquals(0, toks.get(0).getStart());
+            assertEquals(2, toks.get(0).getEnd());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testErrorRecovery() {
+        String input = "var a = 1e; let b# = 2\n  x = 3 $ y";
+        ArrayList<Diagnostic> diagnostics = new ArrayList<>();
+        Lexer lexer = new Lexer(new StringReader(input));
+        lexer.setDiagnosticSink(diagnostics::add);
+        ArrayList<Token> toks = new ArrayList<>();
+        try {
+            Token tok;
+            while ((tok = lexer.consume()).getType() != TokenType.EOF) {
+                toks.add(tok);
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+        assertEquals(List.of(
+                new Token("var", TokenType.VAR_DECL, 1), new Token("a", TokenType.ID, 1),
+                new Token("=", TokenType.ASSIGNMENT, 1), new Token("1e", TokenType.ERROR, 1),
+                new Token(";", TokenType.SEMICOLON, 1), new Token("let", TokenType.CONST_DECL, 1),
+                new Token("b#", TokenType.ERROR, 1), new Token("=", TokenType.ASSIGNMENT, 1),
+                new Token("2", TokenType.INT_LITERAL, 1), new Token("x", TokenType.ID, 2),
+                new Token("=", TokenType.ASSIGNMENT, 2), new Token("3", TokenType.INT_LITERAL, 2),
+                new Token("$", TokenType.ERROR, 2), new Token("y", TokenType.ID, 2)
+        ), toks);
+        assertEquals(List.of(
+                new Diagnostic(1, 9, "Expected a sequence of digits after 'e'"),
+                new Diagnostic(1, 17, "Invalid character '#' after 'b'"),
+                new Diagnostic(2, 9, "Unable to get next token because of invalid syntax at '$'")
+        ), diagnostics);
+
+        // Without a sink, the first error is thrown
+        Lexer throwingLexer = new Lexer(new StringReader(input));
+        throwingLexer.setStacklessErrors(true);
+        SyntaxError err = assertThrows(SyntaxError.class, () -> {
+            while (throwingLexer.consume().getType() != TokenType.EOF) {
+            }
+        });
+        assertEquals(1, err.getLine());
+        assertEquals(0, err.getStackTrace().length);
+
+        // Both modes report an error at the start of the offending token
+        for (String bad : List.of("15e-", "  1e+x", "a#b", "x = 12345678901234567890", "y = 1e400", "\n  $")) {
+            SyntaxError thrown = assertThrows(SyntaxError.class, () -> Lexer.lexAll(bad));
+            ArrayList<Diagnostic> reported = new ArrayList<>();
+            Lexer recoveringLexer = new Lexer(new StringReader(bad));
+            recoveringLexer.setDiagnosticSink(reported::add);
+            try {
+                while (recoveringLexer.consume().getType() != TokenType.EOF) {
+                }
+            } catch (SyntaxError | IOException e) {
+                e.printStackTrace();
+                fail();
+            }
+            assertEquals(List.of(new Diagnostic(thrown.getLine(), thrown.getColumn(), thrown.getMsg())), reported);
+        }
+        err = assertThrows(SyntaxError.class, () -> Lexer.lexAll("x = 15e-;"));
+        assertEquals(5, err.getColumn());
+        err = assertThrows(SyntaxError.class, () -> Lexer.lexAll("x = a#b"));
+        assertEquals(5, err.getColumn());
+    }
+
+    @Test
+    public void testDifferentialHarness(@TempDir Path tempDir) {
+        try {
+            Path file = tempDir.resolve("corpus.txt");
+            Files.writeString(file, new CorpusGenerator(7).generate(1 << 18));
+            DifferentialHarness harness = new DifferentialHarness();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            harness.add("chunks", path -> {
+                String input = Files.readString(path);
+                return new DifferentialHarness.TokenSource() {
+                    private TokenBuffer toks;
+                    private int i = 0;
+
+                    @Override
+                    public Token next() throws SyntaxError {
+                        if (toks == null) {
+                            toks = new ParallelLexer(pool, 64).lexAll(input);
+                        }
+                        return toks.getToken(i++);
+                    }
+                };
+            });
+            // A lexer that loses a token has to be caught where it does
+            harness.add("lossy", path -> {
+                Lexer lexer = new Lexer(Files.newBufferedReader(path));
+                return new DifferentialHarness.TokenSource() {
+                    private int i = 0;
+
+                    @Override
+                    public Token next() throws SyntaxError, IOException {
+                        if (i++ == 100) {
+                            lexer.consume();
+                        }
+                        return lexer.consume();
+                    }
+                };
+            });
+            List<DifferentialHarness.Report> reports = harness.run(file);
+            pool.shutdown();
+            List<String> names = new ArrayList<>(List.of("reader", "mapped", "parallel", "chunks", "lossy"));
+            if (CharReader.isVectorScanningSupported()) {
+                names.add(1, "vector");
+            }
+            assertEquals(names, reports.stream().map(DifferentialHarness.Report::name).collect(Collectors.toList()));
+            for (DifferentialHarness.Report report : reports) {
+                assertNull(report.error());
+                if (report.name().equals("lossy")) {
+                    assertEquals(100, report.divergence().index());
+                    assertEquals(reports.get(0).numToks() - 1, report.numToks());
+                } else {
+                    assertNull(report.divergence(), report.toString());
+                    assertEquals(reports.get(0).numToks(), report.numToks());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+        ArrayList<LexerMetrics> sessions = new ArrayList<>();
+        Lexer.setMetricsListener(sessions::add);
+        try {
+            Lexer lexer = new Lexer(new StringReader("a = .5 . b;"));
+            while (lexer.consume().getType() != TokenType.EOF) {
+            }
+            // Reading past EOF does not end the session again
+            lexer.consume();
+            assertEquals(1, sessions.size());
+            LexerMetrics metrics = sessions.get(0);
+            assertSame(lexer.getMetrics(), metrics);
+            assertEquals(7, metrics.getNumToks());
+            assertEquals(2, metrics.getTokenCount(TokenType.ID));
+            assertEquals(1, metrics.getTokenCount(TokenType.FLOAT_LITERAL));
+            assertEquals(1, metrics.getTokenCount(TokenType.DOT));
+            assertEquals(1, metrics.getTokenCount(TokenType.EOF));
+            assertEquals(11, metrics.getNumChars());
+            assertEquals(0, metrics.getNumErrors());
+            assertEquals(2, metrics.getAttempts(LexerMetrics.Component.WORD));
+            // The dot before a space is tried as a number first and given back to the operator lexer
+            assertEquals(2, metrics.getAttempts(LexerMetrics.Component.NUMBER));
+            assertEquals(1, metrics.getBacktracks(LexerMetrics.Component.NUMBER));
+            assertEquals(3, metrics.getAttempts(LexerMetrics.Component.OPERATOR));
+            assertEquals(0, metrics.getBacktracks(LexerMetrics.Component.OPERATOR));
+
+            // A thrown error ends the session, recovered errors are counted as ERROR tokens
+            Lexer throwingLexer = new Lexer(new StringReader("a # b"));
+            assertThrows(SyntaxError.class, () -> {
+                while (throwingLexer.consume().getType() != TokenType.EOF) {
+                }
+            });
+            Lexer recoveringLexer = new Lexer(new StringReader("a # b $"));
+            recoveringLexer.setDiagnosticSink(diagnostic -> {
+            });
+            while (recoveringLexer.consume().getType() != TokenType.EOF) {
+            }
+            assertEquals(3, sessions.size());
+            assertEquals(1, sessions.get(1).getNumErrors());
+            assertEquals(2, sessions.get(1).getNumChars());
+            assertEquals(2, sessions.get(2).getNumErrors());
+            assertEquals(2, sessions.get(2).getTokenCount(TokenType.ERROR));
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            Lexer.setMetricsListener(null);
+        }
+        // Lexers created without a listener or a recording keep no metrics
+        assertNull(new Lexer(new StringReader("a")).getMetrics());
+    }
+
+    @Test
+    public void testCodePoints() {
+        // Supplementary letters and digits are surrogate pairs, which the reader gets one character at a time
+        String input = "var \uD835\uDCB3x = 1; y\uD835\uDFD8 = \u0661;";
+        Reader reader = new FilterReader(new StringReader(input)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+        Lexer lexer = new Lexer(reader);
+        ArrayList<Token> toks = new ArrayList<>();
+        try {
+            Token tok;
+            while ((tok = lexer.consume()).getType() != TokenType.EOF) {
+                toks.add(tok);
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+        assertEquals(List.of(
+                new Token("var", TokenType.VAR_DECL, 1), new Token("\uD835\uDCB3x", TokenType.ID, 1),
+                new Token("=", TokenType.ASSIGNMENT, 1), new Token("1", TokenType.INT_LITERAL, 1),
+                new Token(";", TokenType.SEMICOLON, 1), new Token("y\uD835\uDFD8", TokenType.ID, 1),
+                new Token("=", TokenType.ASSIGNMENT, 1), new Token("\u0661", TokenType.INT_LITERAL, 1),
+                new Token(";", TokenType.SEMICOLON, 1)
+        ), toks);
+
+        // Errors show the whole code point rather than half of it
+        SyntaxError err = assertThrows(SyntaxError.class, () -> new Lexer(new StringReader("a\uD83D\uDE00")).consume());
+        assertEquals("Invalid character '\uD83D\uDE00' after 'a'", err.getMsg());
+        err = assertThrows(SyntaxError.class, () -> new Lexer(new StringReader("\uD83D\uDE00")).consume());
+        assertEquals("Unable to get next token because of invalid syntax at '\uD83D\uDE00'", err.getMsg());
+    }
+
+    @Test
+    public void testVectorScanning() {
+        assumeTrue(CharReader.isVectorScanningSupported());
+        // Runs of spaces and identifiers longer than the reader's buffer, numbers with long fractions and characters
+        // outside ASCII in the middle of runs
+        String input = new CorpusGenerator(11).generate(1 << 20) + "\n" + " ".repeat(20000) + "x".repeat(20000) +
+                " 1234567890123456789012345.0123456789012345678901234 ab\u00E9cd\u2003\u2003 \t\n";
+        boolean wasVectorScanning = CharReader.isVectorScanning();
+        try {
+            List<List<Object>> toks = new ArrayList<>();
+            for (boolean vectorScanning : new boolean[]{false, true}) {
+                assertEquals(vectorScanning, CharReader.setVectorScanning(vectorScanning));
+                assertEquals(vectorScanning, CharReader.isVectorScanning());
+                toks.add(new Lexer(new StringReader(input)).tokens().map(tok -> List.<Object>of(tok.getType(),
+                        tok.getValue(), tok.getLineNum(), tok.getStart())).collect(Collectors.toList()));
+            }
+            assertEquals(toks.get(0), toks.get(1));
+        } finally {
+            CharReader.setVectorScanning(wasVectorScanning);
+        }
+    }
+
+    @Test
+    public void testLineIndex() {
+        String input = "var x = 1;\n\n  let yy = 2.5;\r\n\tz = x;";
+        List<Token> toks = new ArrayList<>();
+        try {
+            Lexer lexer = new Lexer(new StringReader(input));
+            Token tok;
+            while ((tok = lexer.consume()).getType() != TokenType.EOF) {
+                toks.add(tok);
+            }
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+        // Lines and columns are looked up from the index the reader builds as it fills its buffer
+        assertEquals(List.of(1, 1, 1, 1, 1, 3, 3, 3, 3, 3, 4, 4, 4, 4), toks.stream().map(Token::getLineNum).toList());
+        assertEquals(List.of(1, 5, 7, 9, 10, 3, 7, 10, 12, 15, 2, 4, 6, 7),
+                toks.stream().map(Token::getColumn).toList());
+        assertEquals(-1, new Token("x", TokenType.ID, 1).getColumn());
+
+        LineIndex lines = new LineIndex(5, 3);
+        lines.add(10);
+        lines.add(11);
+        assertEquals(3, lines.getLine(20));
+        lines.commit();
+        assertEquals(3, lines.getLine(5));
+        assertEquals(5, lines.getColumn(9));
+        assertEquals(4, lines.getLine(10));
+        assertEquals(5, lines.getLine(20));
+        assertEquals(10, lines.getColumn(20));
+
+        // Lines that have been moved past are dropped once they fill half of the index, the old index stays intact
+        assertSame(lines, lines.discardBefore(20));
+        LineIndex longLines = new LineIndex(0, 1);
+        for (int i = 1; i < 1000; ++i) {
+            longLines.add(10L * i);
+        }
+        longLines.commit();
+        LineIndex trimmed = longLines.discardBefore(9995);
+        assertNotSame(longLines, trimmed);
+        assertEquals(1000, trimmed.getLine(9995));
+        assertEquals(6, trimmed.getColumn(9995));
+        assertEquals(2, longLines.getLine(15));
+        trimmed.add(10000);
+        trimmed.commit();
+        assertEquals(1001, trimmed.getLine(10000));
+        // Tokens that are kept keep their lines, over a source with many more lines than a reader's index holds
+        String manyLines = "a = 1;\n".repeat(100000) + "b";
+        try {
+            ArrayList<Token> manyToks = extractToks(manyLines);
+            assertEquals(1, manyToks.get(0).getLineNum());
+            assertEquals(50001, manyToks.get(200000).getLineNum());
+            assertEquals(5, manyToks.get(200002).getColumn());
+            assertEquals(100001, manyToks.get(manyToks.size() - 1).getLineNum());
+        } catch (SyntaxError | IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+
+        // Errors carry the column, also when the parallel lexer finds them in a chunk that starts mid-line
+        SyntaxError err = assertThrows(SyntaxError.class, () -> Lexer.lexAll("a = 1;\n  b = 1e;"));
+        assertEquals(2, err.getLine());
+        assertEquals(7, err.getColumn());
+        assertEquals("Expected a sequence of digits after 'e' on line 2, column 7", err.getMessage());
+        String line = "a = 1; b = 2; c = 3; ".repeat(20);
+        String bad = "x\n" + line + "d = #;" + line;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SyntaxError expectedErr = assertThrows(SyntaxError.class, () -> Lexer.lexAll(bad));
+            SyntaxError actualErr = assertThrows(SyntaxError.class, () -> new ParallelLexer(pool, 16).lexAll(bad));
+            assertEquals(expectedErr.getColumn(), actualErr.getColumn());
+            assertEquals(expectedErr.getMessage(), actualErr.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
\ No newline at end of file